@@ -0,0 +1,116 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip;
+
+import net.tammon.sip.packets.Data;
+import net.tammon.sip.simulator.SimulatedDrive;
+import net.tammon.sip.simulator.SipSimulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the throughput of a {@link TCPConnection} against a {@link SipSimulator} on the loopback
+ * interface. Each operation reads or writes a batch of parameters, either one after another or pipelined.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectionBenchmark {
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"1", "8", "32"})
+    public int maxInFlight;
+
+    @Param({"0", "200"})
+    public int latencyMicros;
+
+    private SipSimulator simulator;
+    private TCPConnection connection;
+    private final Map<String, Object> setpoints = new LinkedHashMap<>();
+    private final List<String> idns = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws Exception {
+        this.simulator = new SipSimulator();
+        SimulatedDrive drive = new SimulatedDrive()
+                .setParameter("S-0-0051", 0x04220001, new byte[]{0x15, (byte) 0xCD, 0x5B, 0x07})
+                .setLatencyNanos(TimeUnit.MICROSECONDS.toNanos(this.latencyMicros));
+        for (int i = 1; i <= BATCH_SIZE; i++) {
+            String idn = String.format("P-0-%04d", i);
+            drive.setParameter(idn, 0x04220001, new byte[4]);
+            this.setpoints.put(idn, i / 10.0);
+        }
+        Properties properties = AbstractSipConnection.getDefaultProperties("127.0.0.1", false, this.maxInFlight);
+        properties.setProperty("sipPort", Integer.toString(this.simulator.start(drive)));
+        this.connection = new TCPConnection(properties);
+        this.idns.addAll(this.setpoints.keySet());
+        // the data attributes are read once, the benchmark measures the writes only
+        this.connection.writeDataBatch(0, 0, this.setpoints);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.connection.disconnect();
+        this.simulator.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Data readData() throws Exception {
+        Data data = null;
+        for (int i = 0; i < BATCH_SIZE; i++) data = this.connection.readData(0, 0, "S-0-0051");
+        return data;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Data readDataAsync() throws Exception {
+        CompletableFuture<Data> last = null;
+        for (int i = 0; i < BATCH_SIZE; i++) last = this.connection.readDataAsync(0, 0, "S-0-0051");
+        return last.get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public ReadResult[] readDataBatch() throws Exception {
+        return this.connection.readDataBatch(0, 0, this.idns);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void writeDataBatch() throws Exception {
+        this.connection.writeDataBatch(0, 0, this.setpoints);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip.packets;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the conversion of the raw data of a parameter to java types
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class DataConversionBenchmark {
+
+    private Data signedDecimal;
+    private Data signedDecimalList;
+    private Data string;
+    private Data binaryList;
+    private Data idnList;
+    private final float[] floats = new float[64];
+
+    @Setup
+    public void setUp() throws Exception {
+        // 4 byte signed decimal with 4 decimal places, e.g. a position value
+        this.signedDecimal = new Data(new byte[]{0x15, (byte) 0xCD, 0x5B, 0x07}, new DataAttribute(0x04220001));
+        // list of 64 two byte signed decimals with 1 decimal place
+        byte[] list = new byte[128];
+        for (int i = 0; i < list.length; i++) list[i] = (byte) (i * 7);
+        this.signedDecimalList = new Data(list, new DataAttribute(0x01250001));
+        this.string = new Data("IndraDrive Cs Basic".getBytes(StandardCharsets.UTF_8), new DataAttribute(0x00400001));
+        // list of 32 four byte binaries
+        this.binaryList = new Data(list, new DataAttribute(0x00060001));
+        // list of 2048 idns like the list of all parameters S-0-0017
+        ByteBuffer idns = ByteBuffer.allocate(2048 * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 2048; i++) idns.putInt((i % 2) << 15 | i);
+        this.idnList = new Data(idns.array(), new DataAttribute(0x00560001));
+    }
+
+    @Benchmark
+    public double asDouble() throws Exception {
+        return this.signedDecimal.asDouble();
+    }
+
+    @Benchmark
+    public float[] asFloatArray() throws Exception {
+        return this.signedDecimalList.asFloatArray();
+    }
+
+    @Benchmark
+    public float[] decodeIntoFloats() throws Exception {
+        this.signedDecimalList.decodeInto(this.floats, 0);
+        return this.floats;
+    }
+
+    @Benchmark
+    public String[] asStringArrayOfIdns() throws Exception {
+        return this.idnList.asStringArray();
+    }
+
+    @Benchmark
+    public String asString() {
+        return this.string.asString();
+    }
+
+    @Benchmark
+    public String asStringOfDouble() {
+        return this.signedDecimal.asString();
+    }
+
+    @Benchmark
+    public byte[][] toBinaryArray() throws Exception {
+        return this.binaryList.toBinaryArray();
+    }
+}
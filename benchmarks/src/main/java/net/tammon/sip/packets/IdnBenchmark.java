@@ -0,0 +1,69 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip.packets;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the conversion of idn strings to eIdns and back
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class IdnBenchmark {
+
+    private final byte[] eIdn = {0x22, (byte) 0x84, 0x23, 0x0};
+    private final char[] buffer = new char[Idn.MAX_LENGTH];
+
+    @Benchmark
+    public byte[] parseIdn() {
+        return Idn.getIdnAsByteArray("S-0-0051");
+    }
+
+    @Benchmark
+    public byte[] parseExtendedIdn() {
+        return Idn.getIdnAsByteArray("P-0-1058.0.35");
+    }
+
+    @Benchmark
+    public Idn internedIdn() {
+        return Idn.of("P-0-1058.0.35");
+    }
+
+    @Benchmark
+    public String formatIdn() throws Exception {
+        return Idn.getIdnAsString(this.eIdn);
+    }
+
+    @Benchmark
+    public int formatIdnIntoBuffer() {
+        return Idn.format(0x00238422, this.buffer, 0);
+    }
+}
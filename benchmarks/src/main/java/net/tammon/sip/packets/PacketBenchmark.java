@@ -0,0 +1,102 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip.packets;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the encoding of a read request and the decoding of its response, i.e. the per packet work of
+ * polling a parameter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class PacketBenchmark {
+
+    // read only data response of S-0-0051 (position feedback value 1) with a 4 byte signed decimal value
+    private final byte[] rawResponse = {
+            1, 0, 0, 0, 72, 0, 0, 0, 1, 0, 0x22, 0x04, 4, 0, 0, 0, 0x15, (byte) 0xCD, 0x5B, 0x07};
+    private final ByteBuffer responseBuffer = ByteBuffer.allocateDirect(rawResponse.length).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer requestBuffer = ByteBuffer.allocateDirect(64).order(ByteOrder.LITTLE_ENDIAN);
+    private final ReadOnlyData request = new ReadOnlyData(1, (short) 0, (short) 0, "S-0-0051");
+
+    @Setup
+    public void setUp() {
+        this.responseBuffer.put(this.rawResponse).flip();
+    }
+
+    @Benchmark
+    public byte[] createAndEncodeRequest() {
+        return new ReadOnlyData(1, (short) 0, (short) 0, "S-0-0051").getTcpMsgAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeRequest() {
+        return this.request.getTcpMsgAsByteArray();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeRequestIntoBuffer() {
+        this.requestBuffer.clear();
+        this.request.writeTo(this.requestBuffer);
+        return this.requestBuffer;
+    }
+
+    @Benchmark
+    public ReadOnlyDataResponse decodeResponse() {
+        ReadOnlyDataResponse response = new ReadOnlyDataResponse();
+        response.setData(this.rawResponse);
+        return response;
+    }
+
+    @Benchmark
+    public ReadOnlyDataResponse decodeResponseFromBuffer() {
+        ReadOnlyDataResponse response = new ReadOnlyDataResponse();
+        response.setData(this.responseBuffer);
+        return response;
+    }
+
+    @Benchmark
+    public DataAttribute createDataAttribute() throws Exception {
+        return new DataAttribute(0x04220001);
+    }
+
+    @Benchmark
+    public DataAttribute lookupDataAttribute() throws Exception {
+        return DataAttribute.valueOf(0x04220001);
+    }
+
+    @Benchmark
+    public DataAttribute createDataAttributeFromBytes() throws Exception {
+        return new DataAttribute(new byte[]{1, 0, 0x22, 0x04});
+    }
+}
@@ -0,0 +1,939 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.tammon.sip;
+
+import net.tammon.sip.exceptions.*;
+import net.tammon.sip.packets.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The AbstractSipConnection holds the configuration and the state of the sip connection which is independent
+ * of the transport and implements the public read methods on top of {@link #sendAsync(Request, Class)}.
+ */
+abstract class AbstractSipConnection implements SipConnection {
+    private static final long BUSY_RETRY_DELAY = 10;
+    protected InetAddress ipAddress;
+    protected int maxDelay, leaseTimeout, busyTimeout, sipPort, sipVersion, maxInFlight, requestTimeout;
+    protected boolean keepAlive;
+    protected volatile boolean connected = false;
+    protected volatile List<Integer> supportedMessages;
+    private final AtomicInteger transactionId = new AtomicInteger();
+    private volatile DataAttributeCache dataAttributeCache = new DataAttributeCache();
+    private volatile long lastActivityNanos = System.nanoTime();
+    private volatile boolean keepAliveStopped = true;
+    private volatile SipTimer.Timeout keepAliveTimeout;
+    private volatile SipMetrics metrics = SipMetrics.NOOP;
+
+    /**
+     * @return sipDefault properties file as {@link Properties} Object
+     */
+    static Properties getDefaultProperties() {
+        InputStream inputStream = ClassLoader.getSystemResourceAsStream("sipDefault.properties");
+        Properties properties = new Properties();
+        try {
+            properties.load(inputStream);
+            inputStream.close();
+        } catch (IOException e) {
+            throw new SipInternalException("Problem occurred while trying to load sipDefault.properties", e);
+        }
+        return properties;
+    }
+
+    /**
+     * Returns the default properties with the given connection specific settings
+     *
+     * @param host        domain name or IP Address of the drive (null for the default drive IP)
+     * @param keepAlive   flag if the connection should stay alive even if no request are sent
+     * @param maxInFlight maximum number of requests that are sent without having received their responses
+     * @return sipDefault properties with the given settings
+     */
+    static Properties getDefaultProperties(String host, boolean keepAlive, int maxInFlight) {
+        Properties properties = getDefaultProperties();
+        properties.put("keepAlive", keepAlive);
+        properties.setProperty("maxInFlight", Integer.toString(maxInFlight));
+        if (host != null) {
+            properties.put("host", host);
+        }
+        return properties;
+    }
+
+    /**
+     * Reads the connection settings from the given properties
+     *
+     * @param properties sip connection properties (see sipDefault.properties)
+     */
+    protected void readProperties(Properties properties) {
+        try {
+            String host = null;
+            if (properties.containsKey("host")) {
+                host = properties.getProperty("host");
+            }
+            this.ipAddress = InetAddress.getByName((host == null) ? properties.getProperty("driveIp") : host);
+        } catch (UnknownHostException e) {
+            throw new SipInternalException(
+                    "Cannot resolve hostname. This is probably due to a misspelled hostname or bad dns configuration of host",
+                    e);
+        }
+
+        this.sipPort = Integer.parseInt(properties.getProperty("sipPort"));
+        this.leaseTimeout = Integer.parseInt(properties.getProperty("leaseTimeout"));
+        this.busyTimeout = Integer.parseInt(properties.getProperty("busyTimeout"));
+        this.maxDelay = Integer.parseInt(properties.getProperty("maxDelay"));
+        this.sipVersion = Integer.parseInt(properties.getProperty("sipVersion"));
+        this.maxInFlight = Integer.parseInt(properties.getProperty("maxInFlight", "1"));
+        // the drive answers within busyTimeout, at least with a busy response
+        String requestTimeout = properties.getProperty("requestTimeout");
+        this.requestTimeout = requestTimeout == null ? 2 * this.busyTimeout : Integer.parseInt(requestTimeout);
+
+        Object keepAlive = properties.get("keepAlive");
+        this.keepAlive = keepAlive instanceof Boolean ? (Boolean) keepAlive : Boolean.parseBoolean((String) keepAlive);
+    }
+
+    /**
+     * Sends the request to the sercos device without waiting for the response. The returned future
+     * completes exceptionally with a {@link SipException} in case of communication problems or if the
+     * sercos device responds with an exception.
+     *
+     * @param request       sip request tcp packet
+     * @param responseClass sip response tcp packet type
+     * @return a future of the sip response tcp packet of the given type
+     */
+    abstract CompletableFuture<Response> sendAsync(Request request, Class responseClass);
+
+    /**
+     * Sends the request from a thread which must not block on the socket, e.g. the {@link SipTimer}. The default
+     * implementation is {@link #sendAsync(Request, Class)}, connections which write on the calling thread hand
+     * the request to their I/O thread instead.
+     *
+     * @param request       sip request tcp packet
+     * @param responseClass sip response tcp packet type
+     * @return a future of the sip response tcp packet of the given type
+     */
+    CompletableFuture<Response> sendWithoutBlocking(Request request, Class responseClass) {
+        return this.sendAsync(request, responseClass);
+    }
+
+    /**
+     * Sends the request after checking that the message type is supported by the sercos device
+     *
+     * @param request       sip request tcp packet
+     * @param responseClass sip response tcp packet type
+     * @return a future of the sip response tcp packet of the given type
+     */
+    CompletableFuture<Response> requestAsync(Request request, Class responseClass) {
+        if (this.isSupported(request.getMessageType()))
+            return failedFuture(new SipServiceNotSupportedException("The requested operation "
+                    + request.getClass().getSimpleName() + " is not in the drive's list of supported messages"));
+        return this.sendAsync(request, responseClass);
+    }
+
+    /**
+     * Fails the future of a sent request with a {@link SipSocketTimeoutException} if it is not completed within
+     * requestTimeout milliseconds. The deadline runs on the shared {@link SipTimer} and is cancelled when the
+     * future completes. A requestTimeout of 0 disables the deadline.
+     *
+     * @param request  the sent request
+     * @param future   the future of the response
+     * @param onExpiry called on the timer thread after the future has been failed, e.g. to free the slot of the
+     *                 request, must not block
+     */
+    void startRequestTimeout(Request request, CompletableFuture<Response> future, Runnable onExpiry) {
+        if (this.requestTimeout <= 0) return;
+        SipTimer.Timeout timeout = SipTimer.getDefault().schedule(() -> {
+            if (future.completeExceptionally(new SipSocketTimeoutException("The S/IP device did not answer the "
+                    + request.getClass().getSimpleName() + " request within " + this.requestTimeout + "ms"))) {
+                this.metrics.requestTimedOut(this.ipAddress, request.getMessageType());
+                onExpiry.run();
+            }
+        }, this.requestTimeout, TimeUnit.MILLISECONDS);
+        future.whenComplete((response, throwable) -> timeout.cancel());
+    }
+
+    /**
+     * Returns the delay after which a request answered with a busy response is sent again. The delay starts at
+     * {@value #BUSY_RETRY_DELAY} ms and doubles with every retry. A request is not retried anymore once the device
+     * has been busy for longer than the negotiated busyTimeout.
+     *
+     * @param retries        the number of times the request has been retried so far
+     * @param busySinceNanos {@link System#nanoTime()} of the first busy response to the request
+     * @return the delay in milliseconds or -1 if the request must not be retried anymore
+     */
+    long getBusyRetryDelay(int retries, long busySinceNanos) {
+        long delay = Math.min(this.busyTimeout, BUSY_RETRY_DELAY << Math.min(retries, 16));
+        long busyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - busySinceNanos);
+        return busyMillis + delay > this.busyTimeout ? -1 : delay;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} if the connection records metrics, otherwise 0 to spare the clock read
+     */
+    long metricsTimestamp() {
+        return this.metrics == SipMetrics.NOOP ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records a request which has been written to the connection
+     *
+     * @param request  the written request
+     * @param inFlight the number of requests waiting for their response including the written one
+     */
+    void recordSent(Request request, int inFlight) {
+        SipMetrics metrics = this.metrics;
+        if (metrics == SipMetrics.NOOP) return;
+        metrics.requestSent(this.ipAddress, request.getMessageType(), inFlight);
+        metrics.bytesWritten(this.ipAddress, request.getTcpMsgLength());
+    }
+
+    /**
+     * Records a response which has been read from the connection
+     *
+     * @param request   the request the response belongs to
+     * @param sentNanos the {@link #metricsTimestamp()} taken when the request has been written
+     * @param frame     the raw response
+     */
+    void recordReceived(Request request, long sentNanos, ByteBuffer frame) {
+        SipMetrics metrics = this.metrics;
+        if (metrics == SipMetrics.NOOP) return;
+        metrics.bytesRead(this.ipAddress, frame.remaining());
+        if (Busy.isBusy(frame)) metrics.busyResponse(this.ipAddress, request.getMessageType());
+        else if (sentNanos != 0)
+            metrics.responseReceived(this.ipAddress, request.getMessageType(), System.nanoTime() - sentNanos);
+    }
+
+    /**
+     * @param request the request which has not been processed
+     * @return the exception a request fails with if the device stays busy for longer than busyTimeout
+     */
+    SipSocketTimeoutException busyTimeoutExceeded(Request request) {
+        return new SipSocketTimeoutException("The S/IP device stayed busy and did not process the "
+                + request.getClass().getSimpleName() + " request within " + this.busyTimeout + "ms");
+    }
+
+    /**
+     * Sends several requests of the same message type. The default implementation sends them one by one,
+     * connections which can encode several requests into a single write override it.
+     *
+     * @param requests      sip request tcp packets
+     * @param responseClass sip response tcp packet type of all requests
+     * @return the futures of the responses in the order of the requests
+     */
+    List<CompletableFuture<Response>> sendAllAsync(List<Request> requests, Class responseClass) {
+        List<CompletableFuture<Response>> responses = new ArrayList<>(requests.size());
+        for (Request request : requests) responses.add(this.sendAsync(request, responseClass));
+        return responses;
+    }
+
+    /**
+     * Sends several requests of the same message type after checking that it is supported by the sercos device
+     *
+     * @param requests      sip request tcp packets
+     * @param responseClass sip response tcp packet type of all requests
+     * @return the futures of the responses in the order of the requests
+     */
+    List<CompletableFuture<Response>> requestAllAsync(List<Request> requests, Class responseClass) {
+        if (requests.isEmpty() || !this.isSupported(requests.get(0).getMessageType()))
+            return this.sendAllAsync(requests, responseClass);
+        List<CompletableFuture<Response>> responses = new ArrayList<>(requests.size());
+        for (Request request : requests) responses.add(this.requestAsync(request, responseClass));
+        return responses;
+    }
+
+    /**
+     * Sends the request and waits for the response
+     *
+     * @param request       sip request tcp packet
+     * @param responseClass sip response tcp packet type
+     * @return sip response tcp packet of the given type with the packet data set to the object
+     * @throws SipException in case of communication problems
+     */
+    Response request(Request request, Class responseClass) throws SipException {
+        return await(this.requestAsync(request, responseClass));
+    }
+
+    /**
+     * Waits for the given future and rethrows its exceptional completion
+     *
+     * @param future future of a sip operation
+     * @param <T>    result type of the future
+     * @return the result of the future
+     * @throws SipException if the future completed with a {@link SipException}
+     */
+    static <T> T await(CompletableFuture<T> future) throws SipException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SipCommunicationException("Interrupted while waiting for the S/IP response", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SipException) throw (SipException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new SipInternalException("Unexpected error while waiting for the S/IP response", e.getCause());
+        }
+    }
+
+    static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    /**
+     * Generates a new transaction id for a new sip interaction by increasing the current transaction id by one
+     * without locking. The transaction id is an UINT32 on the wire, so the counter wraps around from
+     * {@link Integer#MAX_VALUE} to {@link Integer#MIN_VALUE}, which is encoded as 2^31, and on to 0 again.
+     *
+     * @return new transaction id
+     */
+    protected int getNewTransactionId() {
+        return this.transactionId.getAndIncrement();
+    }
+
+    /**
+     * Resets the transaction id counter for a new socket connection
+     */
+    protected void resetTransactionId() {
+        this.transactionId.set(0);
+    }
+
+    /**
+     * Returns an instantiated object of specified response class with the data of
+     * the raw response. In addition to that this method checks if the data is valid
+     * and matches the request. The packet is decoded directly from the buffer without
+     * copying it.
+     *
+     * @param frame         buffer containing exactly one response packet, e.g. read by a {@link FrameReader}
+     * @param request       the request object that belongs to the response
+     * @param responseClass specifies the response class which will be used as instantiated
+     *                      object for return type
+     * @return response with data from type responseClass
+     * @throws SipProtocolException            in case the sercos device threw an communication exception (e.g.
+     *                                         invalid request) or in case of a wrong transaction id
+     * @throws SipServiceNotSupportedException in case the sercos device does not support the requested message
+     *                                         type
+     * @throws SipSocketTimeoutException       in case the sercos device answered with a busy response
+     */
+    Response getResponse(ByteBuffer frame, Request request, Class responseClass)
+            throws SipProtocolException, SipServiceNotSupportedException, SipSocketTimeoutException {
+        // every response shows that the drive has received a request recently and renewed the lease
+        this.lastActivityNanos = System.nanoTime();
+        try {
+            Response response = (Response) responseClass.newInstance();
+
+            Head header = new Head(frame);
+
+            // Check if we got the right response to our request
+            if (header.getTransactionId() != request.getTransactionId())
+                throw new SipProtocolException(
+                        "The response transaction ID " + header.getTransactionId()
+                                + " doesn't match the request transaction ID " + request.getTransactionId());
+
+            // Check if Drive threw an communication exception
+            if (header.getMessageType() == 67) {
+                ExceptionResponse exceptionResponse = new ExceptionResponse(frame);
+                this.metrics.exceptionResponse(this.ipAddress, request.getMessageType(),
+                        exceptionResponse.getCommonErrorCode(), exceptionResponse.getSpecificErrorCode());
+                if (exceptionResponse.getCommonErrorCode() == CommonErrorCodes.SERVICESPECIFIC)
+                    throw new SipProtocolException("Drive threw Communication Exception."
+                            + ((exceptionResponse.getCommonErrorCode() == CommonErrorCodes.SERVICESPECIFIC)
+                            ? (" SIP-SpecificErrorCode: " + exceptionResponse.getSpecificErrorCode())
+                            : (" SIP-CommonErrorCode: " + exceptionResponse.getCommonErrorCode())));
+
+                if (exceptionResponse.getCommonErrorCode() == CommonErrorCodes.UNKNOWN_MESSAGE_TYPE)
+                    throw new SipProtocolException("Service not supported.");
+            }
+            // busy responses are retried by the transports, the connect handshake is not retried
+            if (header.getMessageType() == 68) throw this.busyTimeoutExceeded(request);
+
+            if (header.getMessageType() == response.getMessageType())
+                response.setData(frame);
+            else
+                throw new SipInternalException("Invalid Message Type Response");
+            return response;
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new SipInternalException("Invalid Response Class Type. Cannot instantiate object.", e);
+        }
+    }
+
+    /**
+     * checks whether a message type is supported by the connected S/IP device
+     *
+     * @param messageType message type to check
+     * @return message type supported
+     */
+    protected boolean isSupported(int messageType) {
+        return !Objects.isNull(this.supportedMessages) && !this.supportedMessages.contains(messageType);
+    }
+
+    /**
+     * Takes over the supported messages of the connect response and marks the connection as connected
+     *
+     * @param response the response of the sercos device to the connect request
+     */
+    protected void setConnected(ConnectResponse response) {
+        // the device may have negotiated another busy or lease timeout
+        if (response.getBusyTimeout() > 0) this.busyTimeout = response.getBusyTimeout();
+        if (response.getLeaseTimeout() > 0) this.leaseTimeout = response.getLeaseTimeout();
+        this.supportedMessages = IntStream.of(response.getSupportedMessageTypes()).boxed().collect(Collectors.toList());
+        this.connected = true;
+    }
+
+    /**
+     * Starts the keep alive of the connection on the shared {@link SipTimer}. A ping is only sent if no response
+     * has been received for 0.7 × leaseTimeout, so connections with traffic are kept alive by their own requests
+     * and idle connections are pinged before the lease expires.
+     */
+    protected void startKeepAlive() {
+        this.keepAliveStopped = false;
+        this.scheduleKeepAlive(this.getKeepAliveIntervalNanos());
+    }
+
+    /**
+     * Stops the keep alive of the connection
+     */
+    protected void stopKeepAlive() {
+        this.keepAliveStopped = true;
+        SipTimer.Timeout timeout = this.keepAliveTimeout;
+        if (timeout != null) timeout.cancel();
+    }
+
+    private long getKeepAliveIntervalNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(Math.round(this.leaseTimeout * 0.7));
+    }
+
+    private void scheduleKeepAlive(long delayNanos) {
+        if (this.keepAliveStopped) return;
+        SipTimer.Timeout timeout = SipTimer.getDefault().schedule(this::keepAlive, delayNanos, TimeUnit.NANOSECONDS);
+        this.keepAliveTimeout = timeout;
+        // the keep alive may have been stopped before the timeout was published
+        if (this.keepAliveStopped) timeout.cancel();
+    }
+
+    private void keepAlive() {
+        long interval = this.getKeepAliveIntervalNanos();
+        long idle = System.nanoTime() - this.lastActivityNanos;
+        if (idle < interval) {
+            this.scheduleKeepAlive(interval - idle);
+            return;
+        }
+        this.sendWithoutBlocking(new Ping(this.getNewTransactionId()), Pong.class).whenComplete((pong, throwable) -> {
+            if (throwable != null) this.metrics.pingFailed(this.ipAddress, throwable);
+            // a lost connection needs no keep alive anymore
+            if (throwable == null || !(throwable instanceof SipCommunicationException
+                    || throwable.getCause() instanceof SipCommunicationException))
+                this.scheduleKeepAlive(interval);
+        });
+    }
+
+    /**
+     * Checks if the sercos device responds to a ping sip message
+     *
+     * @return true if the device responds, false if it doesn't
+     */
+    protected boolean respondsToPing() {
+        Ping ping = new Ping(this.getNewTransactionId());
+        try {
+            this.request(ping, Pong.class);
+            return true;
+        } catch (Exception e) {
+            this.metrics.pingFailed(this.ipAddress, e);
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * This method is the general abstraction of all public ReadOnlyData methods. It
+     * actually creates the request and response bodies and triggers the TCP send
+     * and receive.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to read
+     *                       (e.g. "P-0-0100" or "S-0-0100.1.1")
+     * @return the {@link Data} of the {@link ReadOnlyDataResponse} which is received after the tcp
+     * request
+     * @throws SipException if any communication or data handling problem occurs
+     */
+    @Override
+    public Data readData(int slaveIndex, int slaveExtension, String idn) throws SipException {
+        ReadOnlyData request = new ReadOnlyData(this.getNewTransactionId(), (short) slaveIndex, (short) slaveExtension,
+                idn);
+        ReadOnlyDataResponse response = (ReadOnlyDataResponse) this.request(request, ReadOnlyDataResponse.class);
+
+        return response.getData();
+    }
+
+    /**
+     * Reads the data of a parameter without blocking the calling thread. Failures are reported as
+     * exceptional completion with the exceptions {@link #readData(int, int, String)} throws.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to read
+     *                       (e.g. "P-0-0100" or "S-0-0100.1.1")
+     * @return a future of the read data
+     */
+    @Override
+    public CompletableFuture<Data> readDataAsync(int slaveIndex, int slaveExtension, String idn) {
+        ReadOnlyData request;
+        try {
+            request = new ReadOnlyData(this.getNewTransactionId(), (short) slaveIndex, (short) slaveExtension, idn);
+        } catch (IllegalArgumentException e) {
+            return failedFuture(e);
+        }
+        return this.requestAsync(request, ReadOnlyDataResponse.class)
+                .thenApply(response -> ((ReadOnlyDataResponse) response).getData());
+    }
+
+    /**
+     * Reads the data of a parameter which is addressed by an already parsed idn
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the idn of the parameter one wants to read, e.g. {@code Idn.of("S-0-0100.1.1")}
+     * @return the {@link Data} of the {@link ReadOnlyDataResponse} which is received after the tcp
+     * request
+     * @throws SipException if any communication or data handling problem occurs
+     */
+    @Override
+    public Data readData(int slaveIndex, int slaveExtension, Idn idn) throws SipException {
+        return await(this.readDataAsync(slaveIndex, slaveExtension, idn));
+    }
+
+    /**
+     * Reads the data of a parameter which is addressed by an already parsed idn without blocking the
+     * calling thread
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the idn of the parameter one wants to read, e.g. {@code Idn.of("S-0-0100.1.1")}
+     * @return a future of the read data
+     */
+    @Override
+    public CompletableFuture<Data> readDataAsync(int slaveIndex, int slaveExtension, Idn idn) {
+        if (idn == null) return failedFuture(new IllegalArgumentException("The idn must not be null"));
+        ReadOnlyData request = new ReadOnlyData(this.getNewTransactionId(), (short) slaveIndex, (short) slaveExtension, idn);
+        return this.requestAsync(request, ReadOnlyDataResponse.class)
+                .thenApply(response -> ((ReadOnlyDataResponse) response).getData());
+    }
+
+    /**
+     * Reads the data of several parameters. All requests are encoded into one buffer and sent together, as far
+     * as the in-flight window of the connection allows.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idns           the 16-bit or 32-bit identifiers of the parameters one wants to read
+     * @return the results in the order of the idns, each with either the data or the failure of the parameter
+     * @throws SipException if the calling thread is interrupted while waiting for the responses
+     */
+    @Override
+    public ReadResult[] readDataBatch(int slaveIndex, int slaveExtension, List<String> idns) throws SipException {
+        return await(this.readDataBatchAsync(slaveIndex, slaveExtension, idns));
+    }
+
+    /**
+     * Reads the data of several parameters without blocking the calling thread. The returned future always
+     * completes normally once all parameters are answered, failures are reported per parameter.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idns           the 16-bit or 32-bit identifiers of the parameters one wants to read
+     * @return a future of the results in the order of the idns
+     */
+    @Override
+    public CompletableFuture<ReadResult[]> readDataBatchAsync(int slaveIndex, int slaveExtension, List<String> idns) {
+        int[] slaveIndexes = new int[idns.size()];
+        int[] slaveExtensions = new int[idns.size()];
+        Arrays.fill(slaveIndexes, slaveIndex);
+        Arrays.fill(slaveExtensions, slaveExtension);
+        return this.readDataBatchAsync(slaveIndexes, slaveExtensions, idns);
+    }
+
+    /**
+     * Reads the data of several parameters which may belong to different slaves behind this connection
+     *
+     * @param slaveIndexes    the slave index of every parameter
+     * @param slaveExtensions the slave extension of every parameter
+     * @param idns            the 16-bit or 32-bit identifiers of the parameters
+     * @return a future of the results in the order of the idns
+     */
+    CompletableFuture<ReadResult[]> readDataBatchAsync(int[] slaveIndexes, int[] slaveExtensions, List<String> idns) {
+        ReadResult[] results = new ReadResult[idns.size()];
+        List<Request> requests = new ArrayList<>(idns.size());
+        int[] indices = new int[idns.size()];
+        for (int i = 0; i < results.length; i++) {
+            try {
+                requests.add(new ReadOnlyData(this.getNewTransactionId(), (short) slaveIndexes[i],
+                        (short) slaveExtensions[i], idns.get(i)));
+                indices[requests.size() - 1] = i;
+            } catch (IllegalArgumentException e) {
+                results[i] = new ReadResult(idns.get(i), null, e);
+            }
+        }
+
+        List<CompletableFuture<Response>> responses = this.requestAllAsync(requests, ReadOnlyDataResponse.class);
+        CompletableFuture<?>[] completions = new CompletableFuture[responses.size()];
+        for (int j = 0; j < completions.length; j++) {
+            int index = indices[j];
+            completions[j] = responses.get(j).handle((response, throwable) -> {
+                if (throwable instanceof CompletionException && throwable.getCause() != null)
+                    throwable = throwable.getCause();
+                results[index] = throwable == null
+                        ? new ReadResult(idns.get(index), ((ReadOnlyDataResponse) response).getData(), null)
+                        : new ReadResult(idns.get(index), null, throwable);
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(completions).thenApply(ignored -> results);
+    }
+
+    /**
+     * Reads the name, data attribute, unit, limits and value of a parameter with a single ReadEverything
+     * request.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to read
+     *                       (e.g. "P-0-0100" or "S-0-0100.1.1")
+     * @return the {@link ReadEverythingResponse} which is received after the tcp request
+     * @throws SipException if any communication or data handling problem occurs
+     */
+    @Override
+    public ReadEverythingResponse readEverything(int slaveIndex, int slaveExtension, String idn) throws SipException {
+        return await(this.readEverythingAsync(slaveIndex, slaveExtension, idn));
+    }
+
+    /**
+     * Reads all elements of a parameter without blocking the calling thread. Failures are reported as
+     * exceptional completion with the exceptions {@link #readEverything(int, int, String)} throws.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to read
+     * @return a future of the response containing all elements of the parameter
+     */
+    @Override
+    public CompletableFuture<ReadEverythingResponse> readEverythingAsync(int slaveIndex, int slaveExtension, String idn) {
+        ReadEverything request;
+        try {
+            request = new ReadEverything(this.getNewTransactionId(), (short) slaveIndex, (short) slaveExtension, idn);
+        } catch (IllegalArgumentException e) {
+            return failedFuture(e);
+        }
+        return this.requestAsync(request, ReadEverythingResponse.class).thenApply(response -> {
+            ReadEverythingResponse everything = (ReadEverythingResponse) response;
+            this.dataAttributeCache.put(slaveIndex, slaveExtension, idn, everything.getDataAttribute());
+            return everything;
+        });
+    }
+
+    /**
+     * Reads the name, data attribute, unit and limits of a parameter. The data attribute is stored in the
+     * {@link DataAttributeCache} of this connection.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to read
+     *                       (e.g. "P-0-0100" or "S-0-0100.1.1")
+     * @return the {@link ReadDataDescriptionResponse} which is received after the tcp request
+     * @throws SipException if any communication or data handling problem occurs
+     */
+    @Override
+    public ReadDataDescriptionResponse readDataDescription(int slaveIndex, int slaveExtension, String idn)
+            throws SipException {
+        return await(this.readDataDescriptionAsync(slaveIndex, slaveExtension, idn));
+    }
+
+    /**
+     * Reads the description of a parameter without blocking the calling thread. Failures are reported as
+     * exceptional completion with the exceptions {@link #readDataDescription(int, int, String)} throws.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to read
+     * @return a future of the description of the parameter
+     */
+    @Override
+    public CompletableFuture<ReadDataDescriptionResponse> readDataDescriptionAsync(int slaveIndex, int slaveExtension,
+                                                                                   String idn) {
+        ReadDataDescription request;
+        try {
+            request = new ReadDataDescription(this.getNewTransactionId(), (short) slaveIndex, (short) slaveExtension,
+                    idn);
+        } catch (IllegalArgumentException e) {
+            return failedFuture(e);
+        }
+        return this.requestAsync(request, ReadDataDescriptionResponse.class).thenApply(response -> {
+            ReadDataDescriptionResponse description = (ReadDataDescriptionResponse) response;
+            this.dataAttributeCache.put(slaveIndex, slaveExtension, idn, description.getDataAttribute());
+            return description;
+        });
+    }
+
+    /**
+     * Returns the data attribute of a parameter. It is taken from the {@link DataAttributeCache} of this
+     * connection and only read from the sercos device if it is not cached yet.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter
+     * @return the data attribute of the parameter
+     * @throws SipException if any communication or data handling problem occurs
+     */
+    @Override
+    public DataAttribute getDataAttribute(int slaveIndex, int slaveExtension, String idn) throws SipException {
+        DataAttribute dataAttribute = this.dataAttributeCache.get(slaveIndex, slaveExtension, idn);
+        if (dataAttribute != null) return dataAttribute;
+        return this.readDataDescription(slaveIndex, slaveExtension, idn).getDataAttribute();
+    }
+
+    /**
+     * Returns the data attribute of a parameter without blocking the calling thread. A cached data attribute
+     * completes the future immediately.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter
+     * @return a future of the data attribute of the parameter
+     */
+    public CompletableFuture<DataAttribute> getDataAttributeAsync(int slaveIndex, int slaveExtension, String idn) {
+        DataAttribute dataAttribute;
+        try {
+            dataAttribute = this.dataAttributeCache.get(slaveIndex, slaveExtension, idn);
+        } catch (IllegalArgumentException e) {
+            return failedFuture(e);
+        }
+        if (dataAttribute != null) return CompletableFuture.completedFuture(dataAttribute);
+        return this.readDataDescriptionAsync(slaveIndex, slaveExtension, idn)
+                .thenApply(ReadDataDescriptionResponse::getDataAttribute);
+    }
+
+    /**
+     * Writes the value of a parameter. The value is encoded with {@link Data#encode(Object, DataAttribute)}
+     * according to the data attribute of the parameter, which is read from the sercos device if it is not
+     * cached yet.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to write
+     * @param value          the value, e.g. a {@link Number}, a {@link String}, an array of numbers or {@link Data}
+     * @throws SipException if the value cannot be encoded or any communication problem occurs
+     */
+    @Override
+    public void writeData(int slaveIndex, int slaveExtension, String idn, Object value) throws SipException {
+        await(this.writeDataAsync(slaveIndex, slaveExtension, idn, value));
+    }
+
+    /**
+     * Writes the value of a parameter without blocking the calling thread. Failures are reported as
+     * exceptional completion with the exceptions {@link #writeData(int, int, String, Object)} throws.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to write
+     * @param value          the value, e.g. a {@link Number}, a {@link String}, an array of numbers or {@link Data}
+     * @return a future which completes when the sercos device acknowledged the write
+     */
+    @Override
+    public CompletableFuture<Void> writeDataAsync(int slaveIndex, int slaveExtension, String idn, Object value) {
+        if (value instanceof Data) return this.sendWriteData(slaveIndex, slaveExtension, idn, (Data) value);
+        return this.getDataAttributeAsync(slaveIndex, slaveExtension, idn)
+                .thenCompose(dataAttribute -> this.encodeAndWrite(slaveIndex, slaveExtension, idn, value, dataAttribute));
+    }
+
+    /**
+     * Writes the values of several parameters without blocking the calling thread. Missing data attributes are
+     * read first, then all writes are sent in the iteration order of the map. The writes are pipelined up to the
+     * maximum number of in-flight requests of the connection, so the batch takes a few round trips instead of
+     * one round trip per parameter.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param values         the values by idn
+     * @return a future which completes when all writes are acknowledged, or exceptionally with the failure of
+     * one of the writes after all of them are answered
+     */
+    @Override
+    public CompletableFuture<Void> writeDataBatchAsync(int slaveIndex, int slaveExtension, Map<String, ?> values) {
+        CompletableFuture<?>[] dataAttributes = values.keySet().stream()
+                .map(idn -> this.getDataAttributeAsync(slaveIndex, slaveExtension, idn))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(dataAttributes).handle((result, throwable) -> {
+            int i = 0;
+            CompletableFuture<?>[] writes = new CompletableFuture[values.size()];
+            for (Map.Entry<String, ?> entry : values.entrySet()) {
+                CompletableFuture<?> dataAttribute = dataAttributes[i];
+                writes[i++] = dataAttribute.isCompletedExceptionally() ? dataAttribute
+                        : this.encodeAndWrite(slaveIndex, slaveExtension, entry.getKey(), entry.getValue(),
+                        (DataAttribute) dataAttribute.join());
+            }
+            return CompletableFuture.allOf(writes);
+        }).thenCompose(writes -> writes);
+    }
+
+    /**
+     * Writes the values of several parameters and waits until all of them are acknowledged
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extentension of the sercos device (default: 0)
+     * @param values         the values by idn
+     * @throws SipException if one of the values cannot be encoded or written
+     * @see #writeDataBatchAsync(int, int, Map)
+     */
+    @Override
+    public void writeDataBatch(int slaveIndex, int slaveExtension, Map<String, ?> values) throws SipException {
+        await(this.writeDataBatchAsync(slaveIndex, slaveExtension, values));
+    }
+
+    private CompletableFuture<Void> encodeAndWrite(int slaveIndex, int slaveExtension, String idn, Object value,
+                                                   DataAttribute dataAttribute) {
+        try {
+            return this.sendWriteData(slaveIndex, slaveExtension, idn, Data.encode(value, dataAttribute));
+        } catch (SipException e) {
+            return failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Void> sendWriteData(int slaveIndex, int slaveExtension, String idn, Data data) {
+        WriteData request;
+        try {
+            request = new WriteData(this.getNewTransactionId(), (short) slaveIndex, (short) slaveExtension, idn, data);
+        } catch (IllegalArgumentException e) {
+            return failedFuture(e);
+        }
+        return this.requestAsync(request, WriteDataResponse.class).thenApply(response -> null);
+    }
+
+    public DataAttributeCache getDataAttributeCache() {
+        return dataAttributeCache;
+    }
+
+    /**
+     * Replaces the cache of data attributes, e.g. by a cache loaded with {@link DataAttributeCache#load}
+     * or by a cache shared with other connections to the same drive
+     *
+     * @param dataAttributeCache the cache used by this connection
+     */
+    public void setDataAttributeCache(DataAttributeCache dataAttributeCache) {
+        this.dataAttributeCache = Objects.requireNonNull(dataAttributeCache);
+    }
+
+    public SipMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Replaces the metrics the connection reports its requests, responses and failures to. By default the
+     * connection reports to {@link SipMetrics#NOOP}.
+     *
+     * @param metrics the metrics of this connection, e.g. an adapter to a metrics registry
+     */
+    public void setMetrics(SipMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Returns a list of the supported message types of the sercos device. This list
+     * is initially sent by the device during the sip connection process.
+     *
+     * @return the list of supported message types
+     */
+    @Override
+    public List<Integer> getSupportedMessages() {
+        return supportedMessages;
+    }
+
+    /**
+     * Returns the IP address of the sercos device which is used by this TCP
+     * connection.
+     *
+     * @return IP address of sercos device as {@link InetAddress}
+     */
+    @Override
+    public InetAddress getIpAddress() {
+        return ipAddress;
+    }
+
+    /**
+     * Returns the used sercos device port of the current sip connection
+     *
+     * @return used sercos device port
+     */
+    @Override
+    public int getSipPort() {
+        return sipPort;
+    }
+
+    /**
+     * Returns the used version of the Sercos Internet Protocol
+     *
+     * @return version of Sercos Internet Protocol
+     */
+    @Override
+    public int getSipVersion() {
+        return sipVersion;
+    }
+
+    /**
+     * @return the time in milliseconds the sercos device may take to respond to a request
+     */
+    public int getBusyTimeout() {
+        return busyTimeout;
+    }
+
+    /**
+     * @return the time in milliseconds after which the sercos device closes an unused connection
+     */
+    public int getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    /**
+     * @return the maximum delay in milliseconds of a request of this connection
+     */
+    public int getMaxDelay() {
+        return maxDelay;
+    }
+}
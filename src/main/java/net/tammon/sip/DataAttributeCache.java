@@ -0,0 +1,142 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip;
+
+import net.tammon.sip.exceptions.TypeNotSupportedException;
+import net.tammon.sip.packets.DataAttribute;
+import net.tammon.sip.packets.Idn;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The DataAttributeCache keeps the {@link DataAttribute}s of the parameters of sercos devices. The data attribute
+ * of a parameter does not change for a given firmware, so it is read once and can be saved to a file and loaded
+ * again on the next start. Tools then know the type of a parameter before its first value is read.
+ * <p>
+ * The entries are keyed on slave index, slave extension and idn. A cache may be shared by several connections
+ * to the same drive.
+ */
+public class DataAttributeCache {
+    private final Map<Long, DataAttribute> dataAttributes = new ConcurrentHashMap<>();
+
+    /**
+     * Loads a cache which has been saved with {@link #save(Path)}
+     *
+     * @param file the file the cache has been saved to
+     * @return the loaded cache
+     * @throws IOException if the file cannot be read or contains invalid entries
+     */
+    public static DataAttributeCache load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            properties.load(reader);
+        }
+        DataAttributeCache cache = new DataAttributeCache();
+        for (String name : properties.stringPropertyNames()) {
+            String[] key = name.split("/");
+            try {
+                if (key.length != 3) throw new IllegalArgumentException("The key must consist of three parts");
+                cache.put(Integer.parseInt(key[0]), Integer.parseInt(key[1]), key[2],
+                        DataAttribute.valueOf(Integer.parseUnsignedInt(properties.getProperty(name), 16)));
+            } catch (IllegalArgumentException | TypeNotSupportedException e) {
+                throw new IOException("Invalid data attribute cache entry " + name + " in " + file, e);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Saves the cache to the given file. Each entry is written as slaveIndex/slaveExtension/idn followed
+     * by the hexadecimal raw data attribute.
+     *
+     * @param file the file the cache is saved to, an existing file is replaced
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<Long, DataAttribute> entry : this.dataAttributes.entrySet()) {
+            long key = entry.getKey();
+            byte[] eIdn = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt((int) key).array();
+            properties.setProperty((key >>> 48) + "/" + ((key >>> 32) & 0xFFFF) + "/" + Idn.getIdnAsString(eIdn),
+                    Integer.toHexString(entry.getValue().getRawDataAttribute()));
+        }
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+            properties.store(writer, "S/IP data attributes");
+        }
+    }
+
+    /**
+     * Returns the cached data attribute of a parameter
+     *
+     * @param slaveIndex     the slave index of the sercos device
+     * @param slaveExtension the slave extension of the sercos device
+     * @param idn            the 16-bit or 32-bit identifier of the parameter
+     * @return the data attribute or null if it is not cached
+     */
+    public DataAttribute get(int slaveIndex, int slaveExtension, String idn) {
+        return this.dataAttributes.get(getKey(slaveIndex, slaveExtension, idn));
+    }
+
+    /**
+     * Caches the data attribute of a parameter. An existing entry is replaced.
+     *
+     * @param slaveIndex     the slave index of the sercos device
+     * @param slaveExtension the slave extension of the sercos device
+     * @param idn            the 16-bit or 32-bit identifier of the parameter
+     * @param dataAttribute  the data attribute of the parameter
+     */
+    public void put(int slaveIndex, int slaveExtension, String idn, DataAttribute dataAttribute) {
+        this.dataAttributes.put(getKey(slaveIndex, slaveExtension, idn), dataAttribute);
+    }
+
+    /**
+     * @return the number of cached data attributes
+     */
+    public int size() {
+        return this.dataAttributes.size();
+    }
+
+    /**
+     * Removes all cached data attributes, e.g. after a firmware update of the drive
+     */
+    public void clear() {
+        this.dataAttributes.clear();
+    }
+
+    private static long getKey(int slaveIndex, int slaveExtension, String idn) {
+        int eIdn = Idn.of(idn).getEIdn();
+        return (slaveIndex & 0xFFFFL) << 48 | (slaveExtension & 0xFFFFL) << 32 | (eIdn & 0xFFFFFFFFL);
+    }
+}
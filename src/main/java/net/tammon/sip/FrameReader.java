@@ -0,0 +1,123 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.tammon.sip;
+
+import net.tammon.sip.exceptions.SipCommunicationException;
+import net.tammon.sip.exceptions.SipException;
+import net.tammon.sip.exceptions.SipProtocolException;
+import net.tammon.sip.packets.Head;
+import net.tammon.sip.packets.PacketLength;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The FrameReader splits the byte stream of a sip connection into response packets. It reads into a direct
+ * buffer which is reused for the whole lifetime of the connection and only grows if a packet does not fit
+ * into it. Packets which are split across several reads are completed by the following reads and packets
+ * which arrive together in one read are returned one after another.
+ * <p>
+ * The packets are returned as slices of the internal buffer. A slice is only valid until the next call of
+ * {@link #readFrom(ReadableByteChannel)} or {@link #readFrame(ReadableByteChannel)}.
+ */
+final class FrameReader {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // the position, limit and flip calls go through Buffer, as ByteBuffer only overrides them since Java 9
+    private ByteBuffer buffer;
+    private int requiredLength = Head.LENGTH;
+
+    FrameReader() {
+        this(INITIAL_CAPACITY);
+    }
+
+    FrameReader(int initialCapacity) {
+        this.buffer = ByteBuffer.allocateDirect(Math.max(initialCapacity, Head.LENGTH)).order(ByteOrder.LITTLE_ENDIAN);
+        // the buffer is kept in read mode: the unprocessed bytes are between position and limit
+        ((Buffer) this.buffer).flip();
+    }
+
+    /**
+     * Returns the next complete packet of the already received data
+     *
+     * @return a little endian slice containing exactly one packet or null if no complete packet is available
+     * @throws SipProtocolException if the length of the packet cannot be determined
+     */
+    ByteBuffer nextFrame() throws SipProtocolException {
+        this.requiredLength = PacketLength.getRequiredLength(this.buffer);
+        if (this.buffer.remaining() < this.requiredLength) return null;
+
+        ByteBuffer frame = this.buffer.slice();
+        ((Buffer) frame).limit(this.requiredLength);
+        frame.order(ByteOrder.LITTLE_ENDIAN);
+        ((Buffer) this.buffer).position(this.buffer.position() + this.requiredLength);
+        this.requiredLength = Head.LENGTH;
+        return frame;
+    }
+
+    /**
+     * Reads the available data of the channel once. Previously returned packets are discarded and the buffer
+     * is enlarged if the pending packet does not fit into it.
+     *
+     * @param channel channel to read from
+     * @return the number of bytes read or -1 if the channel has reached end-of-stream
+     * @throws IOException if reading from the channel fails
+     */
+    int readFrom(ReadableByteChannel channel) throws IOException {
+        this.buffer.compact();
+        if (this.requiredLength > this.buffer.capacity()) {
+            ByteBuffer largerBuffer = ByteBuffer.allocateDirect(this.requiredLength).order(ByteOrder.LITTLE_ENDIAN);
+            ((Buffer) this.buffer).flip();
+            largerBuffer.put(this.buffer);
+            this.buffer = largerBuffer;
+        }
+        try {
+            return channel.read(this.buffer);
+        } finally {
+            ((Buffer) this.buffer).flip();
+        }
+    }
+
+    /**
+     * Reads from a blocking channel until a complete packet is available
+     *
+     * @param channel blocking channel to read from
+     * @return a little endian slice containing exactly one packet
+     * @throws IOException  if reading from the channel fails
+     * @throws SipException if the channel has reached end-of-stream or the packet length is invalid
+     */
+    ByteBuffer readFrame(ReadableByteChannel channel) throws IOException, SipException {
+        ByteBuffer frame;
+        while ((frame = this.nextFrame()) == null) {
+            if (this.readFrom(channel) < 0)
+                throw new SipCommunicationException("The S/IP device closed the connection");
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip;
+
+import net.tammon.sip.packets.Request;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The FrameWriter encodes requests directly into a direct buffer which is reused for the whole lifetime of the
+ * connection and only grows if the pending requests do not fit into it. Several requests can be added before
+ * they are written, so they leave the connection with a single write call.
+ * <p>
+ * The FrameWriter is not thread safe. Callers have to serialize the access to it with its {@link #lock}.
+ */
+final class FrameWriter {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Serializes the access to the writer and the channel it writes to. It is a lock instead of a monitor, so a
+     * virtual thread blocking in the write does not pin its carrier thread.
+     */
+    final ReentrantLock lock = new ReentrantLock();
+
+    // the buffer is kept in write mode: the pending bytes are between 0 and position
+    private ByteBuffer buffer;
+
+    FrameWriter() {
+        this(INITIAL_CAPACITY);
+    }
+
+    FrameWriter(int initialCapacity) {
+        this.buffer = ByteBuffer.allocateDirect(initialCapacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Encodes the request behind the pending data. The request is sent by the next call of
+     * {@link #writeTo(WritableByteChannel)}.
+     *
+     * @param request request to encode
+     */
+    void add(Request request) {
+        int length = request.getTcpMsgLength();
+        if (this.buffer.remaining() < length) {
+            int capacity = Math.max(this.buffer.capacity() * 2, this.buffer.position() + length);
+            ByteBuffer largerBuffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            ((Buffer) this.buffer).flip();
+            largerBuffer.put(this.buffer);
+            this.buffer = largerBuffer;
+        }
+        request.writeTo(this.buffer);
+    }
+
+    /**
+     * @return true if there is data which has not been written yet
+     */
+    boolean hasPending() {
+        return this.buffer.position() > 0;
+    }
+
+    /**
+     * Writes the pending data to the channel once. A non-blocking channel may take only a part of the data,
+     * the rest stays pending.
+     *
+     * @param channel channel to write to
+     * @return true if all pending data has been written
+     * @throws IOException if writing to the channel fails
+     */
+    boolean writeTo(WritableByteChannel channel) throws IOException {
+        ((Buffer) this.buffer).flip();
+        try {
+            channel.write(this.buffer);
+        } finally {
+            this.buffer.compact();
+        }
+        return !this.hasPending();
+    }
+
+    /**
+     * Encodes the request and writes it together with all pending data to a blocking channel
+     *
+     * @param request request to send
+     * @param channel blocking channel to write to
+     * @throws IOException if writing to the channel fails
+     */
+    void write(Request request, WritableByteChannel channel) throws IOException {
+        this.add(request);
+        this.flush(channel);
+    }
+
+    /**
+     * Writes all pending data to a blocking channel
+     *
+     * @param channel blocking channel to write to
+     * @throws IOException if writing to the channel fails
+     */
+    void flush(WritableByteChannel channel) throws IOException {
+        while (!this.writeTo(channel)) ;
+    }
+
+    /**
+     * Discards all pending data
+     */
+    void clear() {
+        ((Buffer) this.buffer).clear();
+    }
+}
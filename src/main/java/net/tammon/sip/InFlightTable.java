@@ -0,0 +1,149 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToIntFunction;
+
+/**
+ * The InFlightTable maps the transaction ids of sent requests to the requests waiting for their response. It is
+ * a fixed ring of slots indexed by the lower bits of the transaction id, so registering and removing a request
+ * is a single compare-and-set without locking or boxing the id. Transaction ids are handed out in ascending
+ * order, so the ids in flight fall into different slots as long as the ring is larger than the in-flight
+ * window. A request whose slot is still taken by an older, slow request is kept in an overflow map instead.
+ * <p>
+ * The table is thread safe.
+ *
+ * @param <T> the type of the waiting requests
+ */
+final class InFlightTable<T> {
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 16;
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final ToIntFunction<? super T> transactionId;
+    private final ConcurrentMap<Integer, T> overflow = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param maxInFlight   the maximum number of requests in flight, the ring gets four times as many slots
+     * @param transactionId function returning the transaction id of a request
+     */
+    InFlightTable(int maxInFlight, ToIntFunction<? super T> transactionId) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, Math.min(maxInFlight, MAX_CAPACITY / 4) * 4) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.transactionId = transactionId;
+    }
+
+    /**
+     * Registers the request under its transaction id
+     *
+     * @param value the waiting request
+     * @return false if another request with the same transaction id is already registered
+     */
+    boolean put(T value) {
+        int transactionId = this.transactionId.applyAsInt(value);
+        int slot = transactionId & this.mask;
+        if (this.slots.compareAndSet(slot, null, value)) {
+            // the id may be in the overflow map if it wrapped around while an old request is still waiting
+            if (this.overflow.containsKey(transactionId)) {
+                this.slots.set(slot, null);
+                return false;
+            }
+        } else {
+            T current = this.slots.get(slot);
+            if (current != null && this.transactionId.applyAsInt(current) == transactionId) return false;
+            if (this.overflow.putIfAbsent(transactionId, value) != null) return false;
+        }
+        this.size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Removes the request with the given transaction id
+     *
+     * @param transactionId the transaction id of a response
+     * @return the removed request or null if no request with the transaction id is registered
+     */
+    T remove(int transactionId) {
+        int slot = transactionId & this.mask;
+        T current = this.slots.get(slot);
+        T removed = null;
+        if (current != null && this.transactionId.applyAsInt(current) == transactionId
+                && this.slots.compareAndSet(slot, current, null))
+            removed = current;
+        else if (!this.overflow.isEmpty())
+            removed = this.overflow.remove(transactionId);
+        if (removed != null) this.size.decrementAndGet();
+        return removed;
+    }
+
+    /**
+     * Removes the given request if it is still registered
+     *
+     * @param value the waiting request
+     * @return true if the request has been removed by this call
+     */
+    boolean remove(T value) {
+        int transactionId = this.transactionId.applyAsInt(value);
+        boolean removed = this.slots.compareAndSet(transactionId & this.mask, value, null)
+                || this.overflow.remove(transactionId, value);
+        if (removed) this.size.decrementAndGet();
+        return removed;
+    }
+
+    /**
+     * Removes all registered requests
+     *
+     * @return the removed requests
+     */
+    List<T> removeAll() {
+        List<T> removed = new ArrayList<>();
+        for (int slot = 0; slot < this.slots.length(); slot++) {
+            T value = this.slots.getAndSet(slot, null);
+            if (value != null) removed.add(value);
+        }
+        for (Integer transactionId : this.overflow.keySet()) {
+            T value = this.overflow.remove(transactionId);
+            if (value != null) removed.add(value);
+        }
+        this.size.addAndGet(-removed.size());
+        return removed;
+    }
+
+    /**
+     * @return the number of registered requests
+     */
+    int size() {
+        return this.size.get();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip;
+
+import net.tammon.sip.exceptions.SipException;
+import net.tammon.sip.packets.Data;
+import net.tammon.sip.packets.DataAttribute;
+import net.tammon.sip.packets.Idn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The MultiAxisConnection serves several axes of a multi-axis controller over one {@link SipConnection}. The axes
+ * are addressed by their slave index, so all of them share one socket and one keep alive instead of a connection
+ * per axis. Each axis is accessed through an {@link Axis} view.
+ * <p>
+ * Reads of the same parameters of all axes are interleaved: the requests of all axes for the first parameter are
+ * sent first, then those for the second parameter and so on. All requests are pipelined, so the values of the
+ * axes are read within a few round trips and close together in time.
+ */
+public class MultiAxisConnection {
+    private final SipConnection connection;
+    private final Map<Integer, Axis> axes = new LinkedHashMap<>();
+
+    /**
+     * Creates the views of the given axes. All axes use the slave extension 0.
+     *
+     * @param connection   the connection to the controller, it should allow several requests in flight
+     * @param slaveIndexes the slave indexes of the axes
+     */
+    public MultiAxisConnection(SipConnection connection, int... slaveIndexes) {
+        this.connection = connection;
+        for (int slaveIndex : slaveIndexes) {
+            if (this.axes.putIfAbsent(slaveIndex, new Axis(slaveIndex, 0)) != null)
+                throw new IllegalArgumentException("The slave index " + slaveIndex + " is given twice");
+        }
+    }
+
+    public SipConnection getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return the views of all axes in the order of their slave indexes given to the constructor
+     */
+    public List<Axis> getAxes() {
+        return Collections.unmodifiableList(new ArrayList<>(this.axes.values()));
+    }
+
+    /**
+     * @param slaveIndex the slave index of the axis
+     * @return the view of the axis
+     * @throws IllegalArgumentException if the axis is not part of this connection
+     */
+    public Axis getAxis(int slaveIndex) {
+        Axis axis = this.axes.get(slaveIndex);
+        if (axis == null) throw new IllegalArgumentException("The slave index " + slaveIndex + " is no axis of this connection");
+        return axis;
+    }
+
+    /**
+     * Reads the same parameters of all axes
+     *
+     * @param idns the 16-bit or 32-bit identifiers of the parameters
+     * @return the results per axis in the order of {@link #getAxes()}, each in the order of the idns
+     * @throws SipException if the calling thread is interrupted while waiting for the responses
+     */
+    public ReadResult[][] readAll(List<String> idns) throws SipException {
+        return AbstractSipConnection.await(this.readAllAsync(idns));
+    }
+
+    /**
+     * Reads the same parameters of all axes without blocking the calling thread. The returned future completes
+     * normally once all parameters are answered, failures are reported per parameter and axis.
+     *
+     * @param idns the 16-bit or 32-bit identifiers of the parameters
+     * @return a future of the results per axis in the order of {@link #getAxes()}, each in the order of the idns
+     */
+    public CompletableFuture<ReadResult[][]> readAllAsync(List<String> idns) {
+        List<Axis> axes = new ArrayList<>(this.axes.values());
+        int count = axes.size() * idns.size();
+        int[] slaveIndexes = new int[count];
+        int[] slaveExtensions = new int[count];
+        List<String> interleavedIdns = new ArrayList<>(count);
+        for (String idn : idns) {
+            for (Axis axis : axes) {
+                slaveIndexes[interleavedIdns.size()] = axis.slaveIndex;
+                slaveExtensions[interleavedIdns.size()] = axis.slaveExtension;
+                interleavedIdns.add(idn);
+            }
+        }
+        return this.readInterleavedAsync(slaveIndexes, slaveExtensions, interleavedIdns).thenApply(interleaved -> {
+            ReadResult[][] results = new ReadResult[axes.size()][idns.size()];
+            for (int i = 0; i < interleaved.length; i++)
+                results[i % axes.size()][i / axes.size()] = interleaved[i];
+            return results;
+        });
+    }
+
+    private CompletableFuture<ReadResult[]> readInterleavedAsync(int[] slaveIndexes, int[] slaveExtensions,
+                                                                 List<String> idns) {
+        if (this.connection instanceof AbstractSipConnection)
+            return ((AbstractSipConnection) this.connection).readDataBatchAsync(slaveIndexes, slaveExtensions, idns);
+
+        ReadResult[] results = new ReadResult[idns.size()];
+        CompletableFuture<?>[] reads = new CompletableFuture[idns.size()];
+        for (int i = 0; i < reads.length; i++) {
+            int index = i;
+            reads[i] = this.connection.readDataAsync(slaveIndexes[i], slaveExtensions[i], idns.get(i))
+                    .handle((data, throwable) -> {
+                        if (throwable instanceof CompletionException && throwable.getCause() != null)
+                            throwable = throwable.getCause();
+                        results[index] = new ReadResult(idns.get(index), data, throwable);
+                        return null;
+                    });
+        }
+        return CompletableFuture.allOf(reads).thenApply(ignored -> results);
+    }
+
+    /**
+     * Closes the shared connection of all axes
+     */
+    public void disconnect() {
+        this.connection.disconnect();
+    }
+
+    /**
+     * The view of a single axis. It addresses all requests to the slave index of the axis.
+     */
+    public final class Axis {
+        private final int slaveIndex;
+        private final int slaveExtension;
+
+        private Axis(int slaveIndex, int slaveExtension) {
+            this.slaveIndex = slaveIndex;
+            this.slaveExtension = slaveExtension;
+        }
+
+        public int getSlaveIndex() {
+            return slaveIndex;
+        }
+
+        public int getSlaveExtension() {
+            return slaveExtension;
+        }
+
+        public Data readData(String idn) throws Exception {
+            return connection.readData(this.slaveIndex, this.slaveExtension, idn);
+        }
+
+        public Data readData(Idn idn) throws Exception {
+            return connection.readData(this.slaveIndex, this.slaveExtension, idn);
+        }
+
+        public CompletableFuture<Data> readDataAsync(String idn) {
+            return connection.readDataAsync(this.slaveIndex, this.slaveExtension, idn);
+        }
+
+        public CompletableFuture<Data> readDataAsync(Idn idn) {
+            return connection.readDataAsync(this.slaveIndex, this.slaveExtension, idn);
+        }
+
+        public ReadResult[] readDataBatch(List<String> idns) throws Exception {
+            return connection.readDataBatch(this.slaveIndex, this.slaveExtension, idns);
+        }
+
+        public CompletableFuture<ReadResult[]> readDataBatchAsync(List<String> idns) {
+            return connection.readDataBatchAsync(this.slaveIndex, this.slaveExtension, idns);
+        }
+
+        public DataAttribute getDataAttribute(String idn) throws Exception {
+            return connection.getDataAttribute(this.slaveIndex, this.slaveExtension, idn);
+        }
+
+        public void writeData(String idn, Object value) throws Exception {
+            connection.writeData(this.slaveIndex, this.slaveExtension, idn, value);
+        }
+
+        public CompletableFuture<Void> writeDataAsync(String idn, Object value) {
+            return connection.writeDataAsync(this.slaveIndex, this.slaveExtension, idn, value);
+        }
+
+        public void writeDataBatch(Map<String, ?> values) throws Exception {
+            connection.writeDataBatch(this.slaveIndex, this.slaveExtension, values);
+        }
+
+        @Override
+        public String toString() {
+            return "Axis " + slaveIndex + "." + slaveExtension + " of " + connection.getIpAddress().getHostAddress();
+        }
+    }
+}
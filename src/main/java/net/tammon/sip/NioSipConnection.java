@@ -0,0 +1,408 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.tammon.sip;
+
+import net.tammon.sip.exceptions.*;
+import net.tammon.sip.packets.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The NioSipConnection implements the SipConnection Interface on a non-blocking {@link SocketChannel}
+ * which is served by a {@link SipEventLoop}. Many connections share the thread of one event loop, so a large
+ * number of sercos devices can be handled without a thread per device. Requests are pipelined in the same way
+ * as by the {@link TCPConnection}: up to maxInFlight requests are sent without waiting for their responses.
+ * <p>
+ * All state of the connection is confined to the event loop thread. Futures returned by this connection are
+ * completed on the event loop thread, so dependent actions which are not registered with an async method
+ * must not block.
+ */
+public class NioSipConnection extends AbstractSipConnection {
+    private final SipEventLoop eventLoop;
+    private final Map<Integer, PendingRequest> inFlight = new HashMap<>();
+    private final ArrayDeque<PendingRequest> waiting = new ArrayDeque<>();
+    private final CompletableFuture<Void> channelConnected = new CompletableFuture<>();
+    private final FrameReader frameReader = new FrameReader();
+    private final FrameWriter frameWriter = new FrameWriter();
+    private SocketChannel channel;
+    private SelectionKey selectionKey;
+    private volatile SipException failure;
+
+    /**
+     * Establishes a connection to a sercos device with the given IP address on the default {@link SipEventLoop}.
+     *
+     * @param host      domain name or IP Address of the drive
+     * @param keepAlive flag if the connection should stay alive even if no request are sent
+     * @throws SipException in case of communication problems
+     */
+    public NioSipConnection(String host, boolean keepAlive) throws SipException {
+        this(host, keepAlive, 1, SipEventLoop.getDefault());
+    }
+
+    /**
+     * Establishes a pipelined connection to a sercos device with the given IP address on the given event loop.
+     *
+     * @param host        domain name or IP Address of the drive
+     * @param keepAlive   flag if the connection should stay alive even if no request are sent
+     * @param maxInFlight maximum number of requests that are sent without having received their responses
+     * @param eventLoop   the event loop which serves the connection
+     * @throws SipException in case of communication problems
+     */
+    public NioSipConnection(String host, boolean keepAlive, int maxInFlight, SipEventLoop eventLoop) throws SipException {
+        this(getDefaultProperties(host, keepAlive, maxInFlight), eventLoop);
+    }
+
+    /**
+     * Establishes a connection to a sercos device with the given properties on the given event loop.
+     *
+     * @param properties sip connection properties (see sipDefault.properties)
+     * @param eventLoop  the event loop which serves the connection
+     * @throws SipException in case of communication problems
+     */
+    public NioSipConnection(Properties properties, SipEventLoop eventLoop) throws SipException {
+        this.eventLoop = eventLoop;
+        this.readProperties(properties);
+        if (this.maxInFlight < 1)
+            throw new IllegalArgumentException("The maximum number of in-flight requests must be at least 1");
+        this.connectChannel();
+        this.connectSip();
+        if (this.keepAlive) this.startKeepAlive();
+    }
+
+    /**
+     * Opens the socket channel and waits at most busyTimeout for the connection to be established
+     *
+     * @throws SipSocketTimeoutException in case the sercos device does not accept the connection in time
+     */
+    private void connectChannel() throws SipSocketTimeoutException {
+        try {
+            this.channel = SocketChannel.open();
+            this.channel.configureBlocking(false);
+            this.channel.socket().setTcpNoDelay(true);
+            boolean connected = this.channel.connect(new InetSocketAddress(this.ipAddress, this.sipPort));
+            this.eventLoop.execute(() -> this.register(connected));
+            this.channelConnected.get(this.busyTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            this.disconnect();
+            throw new SipSocketTimeoutException("Drive does not respond. Probably Drive is not online.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.disconnect();
+            throw new SipInternalException("Interrupted while connecting to the drive", e);
+        } catch (IOException | ExecutionException e) {
+            this.disconnect();
+            throw new SipInternalException(
+                    "Probably Drive is not online or the IP:'" + this.ipAddress.toString() + "' is wrong.", e);
+        }
+    }
+
+    private void register(boolean connected) {
+        try {
+            this.selectionKey = this.eventLoop.register(this.channel,
+                    connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+            if (connected) this.channelConnected.complete(null);
+        } catch (IOException e) {
+            this.channelConnected.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * This method sends a sip connection request to the sercos device and handles
+     * the incoming response
+     *
+     * @throws SipException in case of communication problems
+     */
+    private void connectSip() throws SipException {
+        Connect request = new Connect(this.getNewTransactionId(), this.sipVersion, this.busyTimeout, this.leaseTimeout);
+        ConnectResponse response = (ConnectResponse) await(this.sendAsync(request, ConnectResponse.class));
+        this.setConnected(response);
+    }
+
+    @Override
+    CompletableFuture<Response> sendAsync(Request request, Class responseClass) {
+        PendingRequest pending = new PendingRequest(request, responseClass);
+        SipException failure = this.failure;
+        if (failure != null) return failedFuture(failure);
+        this.startRequestTimeout(pending);
+        try {
+            this.eventLoop.execute(() -> this.submit(pending));
+        } catch (SipInternalException e) {
+            pending.future.completeExceptionally(new SipCommunicationException("The S/IP event loop has been closed", e));
+        }
+        return pending.future;
+    }
+
+    @Override
+    List<CompletableFuture<Response>> sendAllAsync(List<Request> requests, Class responseClass) {
+        List<PendingRequest> pendings = new ArrayList<>(requests.size());
+        List<CompletableFuture<Response>> responses = new ArrayList<>(requests.size());
+        for (Request request : requests) {
+            PendingRequest pending = new PendingRequest(request, responseClass);
+            pendings.add(pending);
+            responses.add(pending.future);
+        }
+        SipException failure = this.failure;
+        if (failure != null) {
+            pendings.forEach(pending -> pending.future.completeExceptionally(failure));
+            return responses;
+        }
+        pendings.forEach(this::startRequestTimeout);
+        try {
+            // one task queues all requests, so they are flushed together
+            this.eventLoop.execute(() -> {
+                if (this.failure != null) {
+                    pendings.forEach(pending -> pending.future.completeExceptionally(this.failure));
+                    return;
+                }
+                this.waiting.addAll(pendings);
+                this.sendWaitingRequests();
+            });
+        } catch (SipInternalException e) {
+            SipCommunicationException closed = new SipCommunicationException("The S/IP event loop has been closed", e);
+            pendings.forEach(pending -> pending.future.completeExceptionally(closed));
+        }
+        return responses;
+    }
+
+    private void startRequestTimeout(PendingRequest pending) {
+        this.startRequestTimeout(pending.request, pending.future, () -> {
+            try {
+                this.eventLoop.execute(() -> this.expired(pending));
+            } catch (SipInternalException e) {
+                // the event loop has already closed all of its connections
+            }
+        });
+    }
+
+    /**
+     * Frees the slot of a request whose deadline has passed. Must be called on the event loop thread.
+     */
+    private void expired(PendingRequest pending) {
+        if (this.inFlight.remove(pending.request.getTransactionId(), pending)) this.sendWaitingRequests();
+        else this.waiting.remove(pending);
+    }
+
+    /**
+     * Parks a request the device answered with a busy response and submits it again after the retry delay.
+     * The slot of the request is free meanwhile, so other requests are not held up by the busy one. Must be
+     * called on the event loop thread.
+     */
+    private void retryLater(PendingRequest pending) {
+        if (pending.busyRetries == 0) pending.busySinceNanos = System.nanoTime();
+        long delay = this.getBusyRetryDelay(pending.busyRetries++, pending.busySinceNanos);
+        if (delay < 0) {
+            pending.future.completeExceptionally(this.busyTimeoutExceeded(pending.request));
+            return;
+        }
+        SipTimer.getDefault().schedule(() -> {
+            try {
+                this.eventLoop.execute(() -> this.submit(pending));
+            } catch (SipInternalException e) {
+                pending.future.completeExceptionally(new SipCommunicationException("The S/IP event loop has been closed", e));
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void submit(PendingRequest pending) {
+        // the deadline of a parked busy request may have passed meanwhile
+        if (pending.future.isDone()) return;
+        if (this.failure != null) {
+            pending.future.completeExceptionally(this.failure);
+            return;
+        }
+        this.waiting.add(pending);
+        this.sendWaitingRequests();
+    }
+
+    private void sendWaitingRequests() {
+        while (this.inFlight.size() < this.maxInFlight && !this.waiting.isEmpty()) {
+            PendingRequest pending = this.waiting.poll();
+            int transactionId = pending.request.getTransactionId();
+            if (this.inFlight.putIfAbsent(transactionId, pending) != null) {
+                pending.future.completeExceptionally(
+                        new SipInternalException("Transaction ID " + transactionId + " is already in use"));
+                continue;
+            }
+            this.frameWriter.add(pending.request);
+            pending.sentNanos = this.metricsTimestamp();
+            this.recordSent(pending.request, this.inFlight.size());
+        }
+        this.flush();
+    }
+
+    /**
+     * Handles the selected operations of the channel. Called by the event loop.
+     *
+     * @param key the selected key of the channel
+     */
+    void handleSelection(SelectionKey key) {
+        try {
+            if (key.isConnectable() && this.channel.finishConnect()) {
+                key.interestOps(SelectionKey.OP_READ);
+                this.channelConnected.complete(null);
+            }
+            if (key.isValid() && key.isReadable()) this.read();
+            if (key.isValid() && key.isWritable()) this.flush();
+        } catch (IOException e) {
+            this.channelConnected.completeExceptionally(e);
+            this.close(new SipCommunicationException("Cannot read from Socket", e));
+        } catch (SipException e) {
+            this.close(e);
+        }
+    }
+
+    /**
+     * Writes the encoded requests with a single write. If the socket cannot take all data, the rest is
+     * written as soon as the channel becomes writable again.
+     */
+    private void flush() {
+        if (this.selectionKey == null || !this.selectionKey.isValid()) return;
+        try {
+            boolean written = !this.frameWriter.hasPending() || this.frameWriter.writeTo(this.channel);
+            this.selectionKey.interestOps(written
+                    ? SelectionKey.OP_READ
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            this.close(new SipCommunicationException("Cannot write output stream data to S/IP device", e));
+        }
+    }
+
+    /**
+     * Reads the available data from the channel and dispatches every complete response packet. Incomplete
+     * packets stay in the frame reader until the rest has been received.
+     */
+    private void read() throws IOException, SipException {
+        if (this.frameReader.readFrom(this.channel) < 0)
+            throw new SipCommunicationException("The S/IP device closed the connection");
+        ByteBuffer rawResponse;
+        while ((rawResponse = this.frameReader.nextFrame()) != null)
+            this.dispatch(rawResponse);
+    }
+
+    private void dispatch(ByteBuffer rawResponse) {
+        int transactionId = rawResponse.getInt(0);
+        PendingRequest pending = this.inFlight.remove(transactionId);
+        // responses without a waiting request (e.g. of an already failed request) are dropped
+        if (pending == null) return;
+        this.recordReceived(pending.request, pending.sentNanos, rawResponse);
+        boolean busy = Busy.isBusy(rawResponse);
+        if (busy) this.retryLater(pending);
+        this.sendWaitingRequests();
+        if (busy) return;
+        try {
+            pending.future.complete(this.getResponse(rawResponse, pending.request, pending.responseClass));
+        } catch (SipException | RuntimeException e) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Closes the channel and fails all requests which are still waiting for their responses. Must be
+     * called on the event loop thread.
+     *
+     * @param cause the exception the waiting requests fail with
+     */
+    void close(SipException cause) {
+        if (this.failure == null) this.failure = cause;
+        this.connected = false;
+        this.stopKeepAlive();
+        if (this.selectionKey != null) this.selectionKey.cancel();
+        try {
+            if (this.channel != null) this.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.channelConnected.completeExceptionally(cause);
+        this.frameWriter.clear();
+        PendingRequest pending;
+        while ((pending = this.waiting.poll()) != null)
+            pending.future.completeExceptionally(cause);
+        for (PendingRequest inFlightRequest : this.inFlight.values())
+            inFlightRequest.future.completeExceptionally(cause);
+        this.inFlight.clear();
+    }
+
+    /**
+     * Checks whether or not the connection to the sercos slave is still connected
+     *
+     * @return true if the connection is alive
+     */
+    @Override
+    public boolean isConnected() {
+        return this.connected && this.channel.isOpen();
+    }
+
+    /**
+     * Stops the keep alive and closes the channel to the sercos device. Requests which are still waiting
+     * for their responses fail with a {@link SipCommunicationException}.
+     */
+    @Override
+    public void disconnect() {
+        this.connected = false;
+        SipCommunicationException exception = new SipCommunicationException("The S/IP connection has been closed");
+        if (this.eventLoop.inEventLoop()) {
+            this.close(exception);
+            return;
+        }
+        try {
+            this.eventLoop.execute(() -> this.close(exception));
+        } catch (SipInternalException e) {
+            // the event loop has already closed all of its connections
+        }
+    }
+
+    /**
+     * A request which has been submitted to the connection and waits for its response
+     */
+    private static final class PendingRequest {
+        private final Request request;
+        private final Class responseClass;
+        private final CompletableFuture<Response> future = new CompletableFuture<>();
+        // only accessed by the event loop thread
+        private int busyRetries;
+        private long busySinceNanos;
+        private long sentNanos;
+
+        private PendingRequest(Request request, Class responseClass) {
+            this.request = request;
+            this.responseClass = responseClass;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip;
+
+import net.tammon.sip.packets.Data;
+
+/**
+ * The result of reading one parameter of a batch read (see {@link SipConnection#readDataBatch}). It holds either
+ * the data of the parameter or the reason why it could not be read.
+ */
+public final class ReadResult {
+    private final String idn;
+    private final Data data;
+    private final Throwable failure;
+
+    ReadResult(String idn, Data data, Throwable failure) {
+        this.idn = idn;
+        this.data = data;
+        this.failure = failure;
+    }
+
+    public String getIdn() {
+        return idn;
+    }
+
+    /**
+     * @return true if the parameter has been read
+     */
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    /**
+     * @return the data of the parameter or null if it could not be read
+     */
+    public Data getData() {
+        return data;
+    }
+
+    /**
+     * @return the reason why the parameter could not be read, e.g. a {@link net.tammon.sip.exceptions.SipException},
+     * or null if it has been read
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return idn + ": " + (failure == null ? data.asString() : failure.toString());
+    }
+}
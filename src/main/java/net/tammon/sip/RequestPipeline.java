@@ -0,0 +1,376 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.tammon.sip;
+
+import net.tammon.sip.exceptions.SipCommunicationException;
+import net.tammon.sip.exceptions.SipException;
+import net.tammon.sip.exceptions.SipInternalException;
+import net.tammon.sip.packets.Busy;
+import net.tammon.sip.packets.Request;
+import net.tammon.sip.packets.Response;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The RequestPipeline writes the requests of a {@link TCPConnection} to the socket without waiting for the
+ * responses of previously sent requests. A dedicated reader thread receives the responses and completes
+ * the futures of the requests by matching the transaction id of the response head. The number of requests
+ * that are sent but not yet answered is limited by the maximum in-flight window. Requests exceeding the
+ * window are queued and sent as soon as a response frees a slot, so callers are never blocked by the window.
+ * All requests which fit into the window at once are encoded into one buffer and leave with a single write.
+ * Requests are written by the calling thread if there is a free slot. Queued requests, busy retries, keep alive
+ * pings and the requests waiting for the slot of an expired request are written by a dedicated writer thread, so
+ * neither the reader thread nor the timer thread block on the socket.
+ */
+final class RequestPipeline {
+    private final AbstractSipConnection connection;
+    private final ReadableByteChannel inputChannel;
+    private final FrameReader frameReader;
+    private final WritableByteChannel outputChannel;
+    private final FrameWriter frameWriter;
+    private final Semaphore window;
+    private final InFlightTable<PendingRequest> inFlight;
+    private final ConcurrentLinkedQueue<PendingRequest> waiting = new ConcurrentLinkedQueue<>();
+    private final Thread readerThread;
+    private final Thread writerThread;
+    private final Semaphore writerWakeup = new Semaphore(0);
+    private volatile SipException failure;
+
+    /**
+     * Creates a new pipeline on the streams of an already connected socket and starts its reader thread
+     *
+     * @param connection       the connection which is used to convert raw responses to response objects
+     * @param inputChannel     blocking channel of the socket to read the responses from
+     * @param frameReader      frame reader of the connection which splits the input into response packets
+     * @param outputChannel    blocking channel of the socket to write the requests to
+     * @param frameWriter      frame writer of the connection which encodes the requests
+     * @param maxInFlight      maximum number of requests that may be sent without having received a response
+     */
+    RequestPipeline(AbstractSipConnection connection, ReadableByteChannel inputChannel, FrameReader frameReader,
+                    WritableByteChannel outputChannel, FrameWriter frameWriter, int maxInFlight) {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("The maximum number of in-flight requests must be at least 1");
+        this.connection = connection;
+        this.inputChannel = inputChannel;
+        this.frameReader = frameReader;
+        this.outputChannel = outputChannel;
+        this.frameWriter = frameWriter;
+        this.window = new Semaphore(maxInFlight);
+        this.inFlight = new InFlightTable<>(maxInFlight, pending -> pending.request.getTransactionId());
+        this.readerThread = ReaderThreads.newThread(this::readResponses,
+                "sip-reader-" + connection.getIpAddress().getHostAddress());
+        this.writerThread = ReaderThreads.newThread(this::writeQueuedRequests,
+                "sip-writer-" + connection.getIpAddress().getHostAddress());
+        this.readerThread.start();
+        this.writerThread.start();
+    }
+
+    /**
+     * Sends the request as soon as there is a free slot in the in-flight window. The returned future is
+     * completed by the reader thread of the pipeline. It completes exceptionally with a
+     * {@link SipException} in case of communication problems or if the drive responds with an exception.
+     *
+     * @param request       sip request tcp packet
+     * @param responseClass sip response tcp packet type
+     * @return a future of the response of the drive with the packet data set to the object
+     */
+    CompletableFuture<Response> sendAsync(Request request, Class responseClass) {
+        CompletableFuture<Response> future = this.enqueue(request, responseClass);
+        this.sendWaitingRequests();
+        return future;
+    }
+
+    /**
+     * Queues the request for the writer thread instead of writing it on the calling thread. Used by callers which
+     * must not block on the socket, e.g. the keep alive on the {@link SipTimer}.
+     *
+     * @param request       sip request tcp packet
+     * @param responseClass sip response tcp packet type
+     * @return a future of the response of the drive with the packet data set to the object
+     */
+    CompletableFuture<Response> sendLater(Request request, Class responseClass) {
+        CompletableFuture<Response> future = this.enqueue(request, responseClass);
+        this.writerWakeup.release();
+        return future;
+    }
+
+    private CompletableFuture<Response> enqueue(Request request, Class responseClass) {
+        PendingRequest pending = new PendingRequest(request, responseClass);
+        SipException failure = this.failure;
+        if (failure != null) {
+            pending.future.completeExceptionally(failure);
+        } else {
+            this.connection.startRequestTimeout(request, pending.future, () -> this.expired(pending));
+            this.waiting.add(pending);
+        }
+        return pending.future;
+    }
+
+    /**
+     * Queues all requests before sending them, so as many of them as fit into the in-flight window are
+     * written with a single write.
+     *
+     * @param requests      sip request tcp packets
+     * @param responseClass sip response tcp packet type of all requests
+     * @return the futures of the responses in the order of the requests
+     */
+    List<CompletableFuture<Response>> sendAllAsync(List<Request> requests, Class responseClass) {
+        List<CompletableFuture<Response>> responses = new ArrayList<>(requests.size());
+        SipException failure = this.failure;
+        for (Request request : requests) {
+            PendingRequest pending = new PendingRequest(request, responseClass);
+            if (failure != null) {
+                pending.future.completeExceptionally(failure);
+            } else {
+                this.connection.startRequestTimeout(request, pending.future, () -> this.expired(pending));
+                this.waiting.add(pending);
+            }
+            responses.add(pending.future);
+        }
+        this.sendWaitingRequests();
+        return responses;
+    }
+
+    /**
+     * Sends queued requests while there are free slots in the in-flight window. A permit which is taken
+     * while the queue has been emptied by another thread is given back and the queue is checked again,
+     * so no request is left behind. The requests are encoded one after another and written together.
+     */
+    private void sendWaitingRequests() {
+        List<PendingRequest> batch = null;
+        while (!this.waiting.isEmpty() && this.window.tryAcquire()) {
+            PendingRequest pending = this.waiting.poll();
+            // requests whose deadline has passed while they were waiting are not sent anymore
+            if (pending == null || pending.future.isDone()) {
+                this.window.release();
+                continue;
+            }
+            try {
+                if (!this.register(pending)) continue;
+            } catch (SipException e) {
+                pending.future.completeExceptionally(e);
+                continue;
+            }
+            if (batch == null) batch = new ArrayList<>();
+            batch.add(pending);
+        }
+        if (batch != null) this.write(batch);
+    }
+
+    /**
+     * Parks a request the device answered with a busy response and queues it again after the retry delay.
+     * The slot of the request is free meanwhile, so other requests are not held up by the busy one.
+     */
+    private void retryLater(PendingRequest pending) {
+        if (pending.busyRetries == 0) pending.busySinceNanos = System.nanoTime();
+        long delay = this.connection.getBusyRetryDelay(pending.busyRetries++, pending.busySinceNanos);
+        if (delay < 0) {
+            pending.future.completeExceptionally(this.connection.busyTimeoutExceeded(pending.request));
+            return;
+        }
+        SipTimer.getDefault().schedule(() -> this.retry(pending), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void retry(PendingRequest pending) {
+        if (pending.future.isDone()) return;
+        SipException failure = this.failure;
+        if (failure != null) {
+            pending.future.completeExceptionally(failure);
+            return;
+        }
+        this.waiting.add(pending);
+        this.writerWakeup.release();
+    }
+
+    /**
+     * Frees the slot of a request whose deadline has passed and lets the writer thread send the waiting requests
+     */
+    private void expired(PendingRequest pending) {
+        if (this.inFlight.remove(pending)) {
+            this.window.release();
+            if (!this.waiting.isEmpty()) this.writerWakeup.release();
+        }
+    }
+
+    /**
+     * Sends the queued requests whenever a slot has been freed or a request has been queued for this thread
+     */
+    private void writeQueuedRequests() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                this.writerWakeup.acquire();
+                this.writerWakeup.drainPermits();
+                this.sendWaitingRequests();
+            }
+        } catch (InterruptedException e) {
+            // the pipeline has been closed
+        }
+    }
+
+    /**
+     * @return false if the deadline of the request passed while it was registered
+     */
+    private boolean register(PendingRequest pending) throws SipException {
+        if (!this.inFlight.put(pending)) {
+            this.window.release();
+            throw new SipInternalException("Transaction ID " + pending.request.getTransactionId() + " is already in use");
+        }
+        if (pending.future.isDone() && this.inFlight.remove(pending)) {
+            this.window.release();
+            return false;
+        }
+        // the reader may have failed between the first check and the registration
+        SipException failure = this.failure;
+        if (failure != null && this.inFlight.remove(pending)) {
+            this.window.release();
+            throw failure;
+        }
+        return true;
+    }
+
+    private void write(List<PendingRequest> batch) {
+        try {
+            this.frameWriter.lock.lock();
+            try {
+                long sentNanos = this.connection.metricsTimestamp();
+                for (PendingRequest pending : batch) {
+                    pending.sentNanos = sentNanos;
+                    this.frameWriter.add(pending.request);
+                }
+                this.frameWriter.flush(this.outputChannel);
+            } finally {
+                this.frameWriter.lock.unlock();
+            }
+            int inFlight = this.inFlight.size();
+            for (PendingRequest pending : batch) this.connection.recordSent(pending.request, inFlight);
+        } catch (IOException e) {
+            this.fail(batch, new SipCommunicationException("Cannot write output stream data to S/IP device", e));
+        } catch (RuntimeException e) {
+            this.fail(batch, e);
+        }
+    }
+
+    private void fail(List<PendingRequest> batch, Exception exception) {
+        for (PendingRequest pending : batch) {
+            if (this.inFlight.remove(pending))
+                this.window.release();
+            pending.future.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * Stops the reader thread. Requests that are still waiting for their response fail with a
+     * {@link SipCommunicationException}.
+     */
+    void close() {
+        this.failAll(new SipCommunicationException("The S/IP connection has been closed"));
+        this.readerThread.interrupt();
+    }
+
+    /**
+     * @return the number of requests that are sent but not yet answered
+     */
+    int getInFlightCount() {
+        return this.inFlight.size();
+    }
+
+    private void readResponses() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ByteBuffer rawResponse = this.frameReader.readFrame(this.inputChannel);
+                int transactionId = rawResponse.getInt(0);
+                PendingRequest pending = this.inFlight.remove(transactionId);
+                // responses without a waiting request (e.g. of an already failed request) are dropped
+                if (pending == null) continue;
+                this.window.release();
+                this.connection.recordReceived(pending.request, pending.sentNanos, rawResponse);
+                boolean busy = Busy.isBusy(rawResponse);
+                if (busy) this.retryLater(pending);
+                if (!this.waiting.isEmpty()) this.writerWakeup.release();
+                if (busy) continue;
+                try {
+                    pending.future.complete(this.connection.getResponse(rawResponse, pending.request, pending.responseClass));
+                } catch (SipException | RuntimeException e) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+        } catch (IOException e) {
+            this.readerFailed(new SipCommunicationException("Cannot read from Socket", e));
+        } catch (SipException e) {
+            this.readerFailed(e);
+        }
+    }
+
+    /**
+     * Fails all requests and disconnects the connection, as the responses cannot be read any further. Nothing
+     * is disconnected if the reader failed because the pipeline has been closed.
+     */
+    private void readerFailed(SipException exception) {
+        boolean closed = this.failure != null;
+        this.failAll(exception);
+        if (!closed) this.connection.disconnect();
+    }
+
+    private void failAll(SipException exception) {
+        if (this.failure == null) this.failure = exception;
+        PendingRequest waitingRequest;
+        while ((waitingRequest = this.waiting.poll()) != null)
+            waitingRequest.future.completeExceptionally(exception);
+        for (PendingRequest pending : this.inFlight.removeAll()) {
+            this.window.release();
+            pending.future.completeExceptionally(exception);
+        }
+        this.writerThread.interrupt();
+    }
+
+    /**
+     * A request which has been registered in the pipeline and waits for its response
+     */
+    private static final class PendingRequest {
+        private final Request request;
+        private final Class responseClass;
+        private final CompletableFuture<Response> future = new CompletableFuture<>();
+        // written before the request is sent and read by the reader thread after the response arrived
+        private volatile long sentNanos;
+        // only accessed by the reader thread
+        private int busyRetries;
+        private long busySinceNanos;
+
+        private PendingRequest(Request request, Class responseClass) {
+            this.request = request;
+            this.responseClass = responseClass;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip;
+
+import net.tammon.sip.exceptions.SipCommunicationException;
+import net.tammon.sip.exceptions.SipException;
+import net.tammon.sip.packets.Data;
+import net.tammon.sip.packets.DataAttribute;
+import net.tammon.sip.packets.Idn;
+import net.tammon.sip.packets.ReadDataDescriptionResponse;
+import net.tammon.sip.packets.ReadEverythingResponse;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * The ResilientSipConnection wraps a connection to one sercos device and replaces it with a new one when the
+ * device closes it or the connection breaks, e.g. because the drive rebooted. Callers keep using the same object.
+ * <p>
+ * A lost connection is noticed by the connection itself once it cannot read from its socket anymore, or by a request
+ * which fails with a {@link SipCommunicationException}. The next request starts the reconnect and waits for it. Reconnects are delayed by an exponential backoff with full jitter, starting
+ * at reconnectDelay and capped at reconnectMaxDelay, so a fleet of connections losing their drives at the same time
+ * does not reconnect in lockstep. The delay runs on the shared {@link SipTimer} and the blocking connect runs on a
+ * thread of its own, so a drive which does not answer its connect holds up no other connection.
+ * <p>
+ * After circuitBreakerThreshold failed reconnects in a row, the circuit breaker of the connection opens: requests
+ * fail immediately for circuitBreakerOpenTime milliseconds without any reconnect. Afterwards the next request tries
+ * one reconnect again.
+ * <p>
+ * If replayReads is set, reads of {@link #readData(int, int, String)} and
+ * {@link #readDataBatch(int, int, List)} that fail because the connection was lost are sent once more on the new
+ * connection. Reading a parameter has no side effects, so the replay is safe. Writes are never replayed.
+ */
+public class ResilientSipConnection implements SipConnection {
+    private final Properties properties;
+    private final Connector connector;
+    private final long reconnectDelay;
+    private final long reconnectMaxDelay;
+    private final int circuitBreakerThreshold;
+    private final long circuitBreakerOpenTime;
+    private final boolean replayReads;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile SipConnection connection;
+    private volatile boolean closed;
+    private volatile SipMetrics metrics = SipMetrics.NOOP;
+    // guarded by lock
+    private CompletableFuture<SipConnection> reconnect;
+    private int failedReconnects;
+    private long circuitOpenUntil;
+    private int reconnectCount;
+
+    /**
+     * Creates a new connection function, e.g. {@code TCPConnection::new}
+     */
+    @FunctionalInterface
+    public interface Connector {
+        SipConnection connect(Properties properties) throws SipException;
+    }
+
+    /**
+     * Establishes a resilient connection which connects with {@link TCPConnection}s
+     *
+     * @param properties sip connection properties (see sipDefault.properties)
+     * @throws SipException in case the first connection cannot be established
+     */
+    public ResilientSipConnection(Properties properties) throws SipException {
+        this(properties, TCPConnection::new);
+    }
+
+    /**
+     * Establishes a resilient connection
+     *
+     * @param properties sip connection properties (see sipDefault.properties)
+     * @param connector  creates the connections from the properties
+     * @throws SipException in case the first connection cannot be established
+     */
+    public ResilientSipConnection(Properties properties, Connector connector) throws SipException {
+        this.properties = new Properties();
+        this.properties.putAll(properties);
+        this.connector = connector;
+        this.reconnectDelay = Math.max(1, getLong(properties, "reconnectDelay", 100));
+        this.reconnectMaxDelay = Math.max(this.reconnectDelay, getLong(properties, "reconnectMaxDelay", 30000));
+        this.circuitBreakerThreshold = (int) getLong(properties, "circuitBreakerThreshold", 5);
+        this.circuitBreakerOpenTime = getLong(properties, "circuitBreakerOpenTime", 60000);
+        Object replayReads = properties.get("replayReads");
+        this.replayReads = replayReads instanceof Boolean ? (Boolean) replayReads : Boolean.parseBoolean((String) replayReads);
+        this.connection = connector.connect(this.properties);
+    }
+
+    private static long getLong(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    /**
+     * Returns the current connection or waits for a reconnect if it is lost
+     */
+    private CompletableFuture<SipConnection> connection() {
+        SipConnection connection = this.connection;
+        if (connection.isConnected()) return CompletableFuture.completedFuture(connection);
+        this.lock.lock();
+        try {
+            if (this.closed)
+                return AbstractSipConnection.failedFuture(new SipCommunicationException("The S/IP connection has been closed"));
+            if (this.connection.isConnected()) return CompletableFuture.completedFuture(this.connection);
+            if (this.reconnect == null) {
+                long remaining = this.circuitOpenUntil - System.currentTimeMillis();
+                if (this.failedReconnects >= this.circuitBreakerThreshold && remaining > 0)
+                    return AbstractSipConnection.failedFuture(new SipCommunicationException("The circuit breaker of "
+                            + this.getIpAddress().getHostAddress() + " is open for another " + remaining + "ms"));
+                this.reconnect = new CompletableFuture<>();
+                // the timer thread must not block, so the connect runs on a thread of its own
+                String threadName = "sip-reconnect-" + this.getIpAddress().getHostAddress();
+                SipTimer.getDefault().schedule(() -> ReaderThreads.newThread(this::reconnect, threadName).start(),
+                        this.nextReconnectDelay(), TimeUnit.MILLISECONDS);
+            }
+            return this.reconnect;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private long nextReconnectDelay() {
+        long ceiling = Math.min(this.reconnectMaxDelay, this.reconnectDelay << Math.min(this.failedReconnects, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private void reconnect() {
+        SipConnection lost = this.connection;
+        lost.disconnect();
+        SipConnection connection = null;
+        Exception failure = null;
+        try {
+            if (!this.closed) connection = this.connector.connect(this.properties);
+        } catch (SipException | RuntimeException e) {
+            failure = new SipCommunicationException("Cannot reconnect to " + lost.getIpAddress().getHostAddress(), e);
+        }
+        CompletableFuture<SipConnection> reconnect;
+        this.lock.lock();
+        try {
+            reconnect = this.reconnect;
+            this.reconnect = null;
+            if (connection != null && !this.closed) {
+                if (lost instanceof AbstractSipConnection && connection instanceof AbstractSipConnection)
+                    ((AbstractSipConnection) connection).setDataAttributeCache(
+                            ((AbstractSipConnection) lost).getDataAttributeCache());
+                if (connection instanceof AbstractSipConnection)
+                    ((AbstractSipConnection) connection).setMetrics(this.metrics);
+                this.connection = connection;
+                this.failedReconnects = 0;
+                this.reconnectCount++;
+            } else if (failure != null) {
+                if (++this.failedReconnects >= this.circuitBreakerThreshold)
+                    this.circuitOpenUntil = System.currentTimeMillis() + this.circuitBreakerOpenTime;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        if (this.closed) {
+            if (connection != null) connection.disconnect();
+            failure = new SipCommunicationException("The S/IP connection has been closed");
+        }
+        // the reconnect has already been failed if the connection was closed meanwhile
+        if (reconnect == null) return;
+        if (failure == null) {
+            this.metrics.reconnected(connection.getIpAddress());
+            reconnect.complete(connection);
+        } else reconnect.completeExceptionally(failure);
+    }
+
+    private static boolean isConnectionLoss(Throwable throwable) {
+        return unwrap(throwable) instanceof SipCommunicationException;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    /**
+     * Runs the operation on the current connection. A lost connection is disconnected, so the next operation
+     * reconnects.
+     */
+    private <T> CompletableFuture<T> call(Function<SipConnection, CompletableFuture<T>> operation) {
+        return this.connection().thenCompose(connection -> operation.apply(connection).whenComplete((result, throwable) -> {
+            if (throwable != null && isConnectionLoss(throwable)) connection.disconnect();
+        }));
+    }
+
+    /**
+     * Runs the read on the current connection and replays it once on a new connection if the connection was lost
+     */
+    private <T> CompletableFuture<T> read(Function<SipConnection, CompletableFuture<T>> operation) {
+        CompletableFuture<T> first = this.call(operation);
+        if (!this.replayReads) return first;
+        return first.handle((result, throwable) -> {
+            if (throwable == null) return CompletableFuture.completedFuture(result);
+            if (isConnectionLoss(throwable)) return this.call(operation);
+            return AbstractSipConnection.<T>failedFuture(unwrap(throwable));
+        }).thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<ReadResult[]> readBatch(int slaveIndex, int slaveExtension, List<String> idns, boolean replay) {
+        return this.connection().thenCompose(connection -> connection.readDataBatchAsync(slaveIndex, slaveExtension, idns)
+                .thenCompose(results -> {
+                    List<Integer> lost = new ArrayList<>();
+                    for (int i = 0; i < results.length; i++)
+                        if (!results[i].isSuccess() && isConnectionLoss(results[i].getFailure())) lost.add(i);
+                    if (lost.isEmpty()) return CompletableFuture.completedFuture(results);
+                    connection.disconnect();
+                    if (!replay) return CompletableFuture.completedFuture(results);
+
+                    List<String> lostIdns = new ArrayList<>(lost.size());
+                    for (int index : lost) lostIdns.add(idns.get(index));
+                    return this.readBatch(slaveIndex, slaveExtension, lostIdns, false).handle((replayed, throwable) -> {
+                        // the failures of the first attempt are kept if there is no new connection
+                        if (replayed != null)
+                            for (int i = 0; i < replayed.length; i++) results[lost.get(i)] = replayed[i];
+                        return results;
+                    });
+                }));
+    }
+
+    /**
+     * @return the number of times the connection has been replaced by a new one
+     */
+    public int getReconnectCount() {
+        this.lock.lock();
+        try {
+            return this.reconnectCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public SipMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Replaces the metrics of the current connection and of all connections replacing it. Reconnects are
+     * reported to the metrics as well.
+     *
+     * @param metrics the metrics of this connection, e.g. an adapter to a metrics registry
+     */
+    public void setMetrics(SipMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+        SipConnection connection = this.connection;
+        if (connection instanceof AbstractSipConnection) ((AbstractSipConnection) connection).setMetrics(metrics);
+    }
+
+    /**
+     * @return true if requests fail immediately because too many reconnects failed in a row
+     */
+    public boolean isCircuitOpen() {
+        this.lock.lock();
+        try {
+            return this.failedReconnects >= this.circuitBreakerThreshold
+                    && this.circuitOpenUntil > System.currentTimeMillis();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return !this.closed && this.connection.isConnected();
+    }
+
+    @Override
+    public InetAddress getIpAddress() {
+        return this.connection.getIpAddress();
+    }
+
+    @Override
+    public int getSipPort() {
+        return this.connection.getSipPort();
+    }
+
+    @Override
+    public int getSipVersion() {
+        return this.connection.getSipVersion();
+    }
+
+    @Override
+    public List<Integer> getSupportedMessages() {
+        return this.connection.getSupportedMessages();
+    }
+
+    /**
+     * Closes the current connection. Requests waiting for a reconnect fail and no further reconnect is attempted.
+     */
+    @Override
+    public void disconnect() {
+        CompletableFuture<SipConnection> reconnect;
+        this.lock.lock();
+        try {
+            this.closed = true;
+            reconnect = this.reconnect;
+            this.reconnect = null;
+        } finally {
+            this.lock.unlock();
+        }
+        this.connection.disconnect();
+        if (reconnect != null)
+            reconnect.completeExceptionally(new SipCommunicationException("The S/IP connection has been closed"));
+    }
+
+    @Override
+    public Data readData(int slaveIndex, int slaveExtension, String idn) throws Exception {
+        return AbstractSipConnection.await(this.readDataAsync(slaveIndex, slaveExtension, idn));
+    }
+
+    @Override
+    public CompletableFuture<Data> readDataAsync(int slaveIndex, int slaveExtension, String idn) {
+        return this.read(connection -> connection.readDataAsync(slaveIndex, slaveExtension, idn));
+    }
+
+    @Override
+    public Data readData(int slaveIndex, int slaveExtension, Idn idn) throws Exception {
+        return AbstractSipConnection.await(this.readDataAsync(slaveIndex, slaveExtension, idn));
+    }
+
+    @Override
+    public CompletableFuture<Data> readDataAsync(int slaveIndex, int slaveExtension, Idn idn) {
+        return this.read(connection -> connection.readDataAsync(slaveIndex, slaveExtension, idn));
+    }
+
+    @Override
+    public ReadResult[] readDataBatch(int slaveIndex, int slaveExtension, List<String> idns) throws Exception {
+        return AbstractSipConnection.await(this.readDataBatchAsync(slaveIndex, slaveExtension, idns));
+    }
+
+    @Override
+    public CompletableFuture<ReadResult[]> readDataBatchAsync(int slaveIndex, int slaveExtension, List<String> idns) {
+        return this.readBatch(slaveIndex, slaveExtension, idns, this.replayReads);
+    }
+
+    @Override
+    public ReadEverythingResponse readEverything(int slaveIndex, int slaveExtension, String idn) throws Exception {
+        return AbstractSipConnection.await(this.readEverythingAsync(slaveIndex, slaveExtension, idn));
+    }
+
+    @Override
+    public CompletableFuture<ReadEverythingResponse> readEverythingAsync(int slaveIndex, int slaveExtension, String idn) {
+        return this.call(connection -> connection.readEverythingAsync(slaveIndex, slaveExtension, idn));
+    }
+
+    @Override
+    public ReadDataDescriptionResponse readDataDescription(int slaveIndex, int slaveExtension, String idn) throws Exception {
+        return AbstractSipConnection.await(this.readDataDescriptionAsync(slaveIndex, slaveExtension, idn));
+    }
+
+    @Override
+    public CompletableFuture<ReadDataDescriptionResponse> readDataDescriptionAsync(int slaveIndex, int slaveExtension,
+                                                                                   String idn) {
+        return this.call(connection -> connection.readDataDescriptionAsync(slaveIndex, slaveExtension, idn));
+    }
+
+    @Override
+    public DataAttribute getDataAttribute(int slaveIndex, int slaveExtension, String idn) throws Exception {
+        SipConnection connection = AbstractSipConnection.await(this.connection());
+        try {
+            return connection.getDataAttribute(slaveIndex, slaveExtension, idn);
+        } catch (SipCommunicationException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    @Override
+    public void writeData(int slaveIndex, int slaveExtension, String idn, Object value) throws Exception {
+        AbstractSipConnection.await(this.writeDataAsync(slaveIndex, slaveExtension, idn, value));
+    }
+
+    @Override
+    public CompletableFuture<Void> writeDataAsync(int slaveIndex, int slaveExtension, String idn, Object value) {
+        return this.call(connection -> connection.writeDataAsync(slaveIndex, slaveExtension, idn, value));
+    }
+
+    @Override
+    public void writeDataBatch(int slaveIndex, int slaveExtension, Map<String, ?> values) throws Exception {
+        AbstractSipConnection.await(this.writeDataBatchAsync(slaveIndex, slaveExtension, values));
+    }
+
+    @Override
+    public CompletableFuture<Void> writeDataBatchAsync(int slaveIndex, int slaveExtension, Map<String, ?> values) {
+        return this.call(connection -> connection.writeDataBatchAsync(slaveIndex, slaveExtension, values));
+    }
+}
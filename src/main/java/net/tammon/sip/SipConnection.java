@@ -25,10 +25,17 @@
 
 package net.tammon.sip;
 
+import net.tammon.sip.exceptions.SipServiceNotSupportedException;
 import net.tammon.sip.packets.Data;
+import net.tammon.sip.packets.DataAttribute;
+import net.tammon.sip.packets.Idn;
+import net.tammon.sip.packets.ReadDataDescriptionResponse;
+import net.tammon.sip.packets.ReadEverythingResponse;
 
 import java.net.InetAddress;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface SipConnection {
 
@@ -74,4 +81,230 @@ public interface SipConnection {
     void disconnect();
 
     Data readData(int slaveIndex, int slaveExtension, String idn) throws Exception;
+
+    /**
+     * Reads the data of a parameter without blocking the calling thread. The returned future is completed
+     * by the I/O thread of the connection. Failures are reported as exceptional completion with the same
+     * exceptions {@link #readData(int, int, String)} throws (e.g. {@link net.tammon.sip.exceptions.SipProtocolException}).
+     * Dependent actions which are not registered with an async method run on the I/O thread and must not block.
+     * The default implementation runs {@link #readData(int, int, String)} in the common pool.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to read
+     * @return a future of the read data
+     */
+    default CompletableFuture<Data> readDataAsync(int slaveIndex, int slaveExtension, String idn) {
+        return BlockingCalls.supplyAsync(() -> this.readData(slaveIndex, slaveExtension, idn));
+    }
+
+    /**
+     * Reads the data of a parameter which is addressed by an already parsed idn. Cyclic reads of the same
+     * parameter should keep the idn returned by {@link Idn#of(String)} instead of passing the String.
+     * The default implementation calls {@link #readData(int, int, String)} with the String form of the idn.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idn            the idn of the parameter one wants to read
+     * @return the read data
+     * @throws Exception if any communication or data handling problem occurs
+     */
+    default Data readData(int slaveIndex, int slaveExtension, Idn idn) throws Exception {
+        return this.readData(slaveIndex, slaveExtension, idn.getIdn());
+    }
+
+    /**
+     * Reads the data of a parameter which is addressed by an already parsed idn without blocking the
+     * calling thread. The default implementation calls {@link #readDataAsync(int, int, String)} with the String
+     * form of the idn.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idn            the idn of the parameter one wants to read
+     * @return a future of the read data
+     * @see #readDataAsync(int, int, String)
+     */
+    default CompletableFuture<Data> readDataAsync(int slaveIndex, int slaveExtension, Idn idn) {
+        return this.readDataAsync(slaveIndex, slaveExtension, idn.getIdn());
+    }
+
+    /**
+     * Reads the data of several parameters with one call. The requests are sent together instead of waiting
+     * for each response before sending the next request, so this is the fastest way to poll many parameters.
+     * A failure of one parameter, e.g. an unknown idn, does not affect the results of the others. The default
+     * implementation reads one parameter after the other with {@link #readData(int, int, String)}.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idns           the 16-bit or 32-bit identifiers of the parameters one wants to read
+     * @return the results in the order of the idns
+     * @throws Exception if the calling thread is interrupted while waiting for the responses
+     */
+    default ReadResult[] readDataBatch(int slaveIndex, int slaveExtension, List<String> idns) throws Exception {
+        ReadResult[] results = new ReadResult[idns.size()];
+        for (int i = 0; i < results.length; i++) {
+            String idn = idns.get(i);
+            try {
+                results[i] = new ReadResult(idn, this.readData(slaveIndex, slaveExtension, idn), null);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                results[i] = new ReadResult(idn, null, e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Reads the data of several parameters without blocking the calling thread. The returned future completes
+     * normally once all parameters are answered. The default implementation runs
+     * {@link #readDataBatch(int, int, List)} in the common pool.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idns           the 16-bit or 32-bit identifiers of the parameters one wants to read
+     * @return a future of the results in the order of the idns
+     */
+    default CompletableFuture<ReadResult[]> readDataBatchAsync(int slaveIndex, int slaveExtension, List<String> idns) {
+        return BlockingCalls.supplyAsync(() -> this.readDataBatch(slaveIndex, slaveExtension, idns));
+    }
+
+    /**
+     * Reads the name, data attribute, unit, limits and value of a parameter with a single ReadEverything
+     * request instead of one request per element. The default implementation throws a
+     * {@link SipServiceNotSupportedException}.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to read
+     * @return the response containing all elements of the parameter
+     * @throws Exception if any communication or data handling problem occurs
+     */
+    default ReadEverythingResponse readEverything(int slaveIndex, int slaveExtension, String idn) throws Exception {
+        throw new SipServiceNotSupportedException("ReadEverything is not supported by " + this.getClass().getName());
+    }
+
+    /**
+     * Reads all elements of a parameter without blocking the calling thread. Failures are reported as
+     * exceptional completion with the same exceptions {@link #readEverything(int, int, String)} throws.
+     * The default implementation runs {@link #readEverything(int, int, String)} in the common pool.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to read
+     * @return a future of the response containing all elements of the parameter
+     */
+    default CompletableFuture<ReadEverythingResponse> readEverythingAsync(int slaveIndex, int slaveExtension, String idn) {
+        return BlockingCalls.supplyAsync(() -> this.readEverything(slaveIndex, slaveExtension, idn));
+    }
+
+    /**
+     * Reads the name, data attribute, unit and limits of a parameter without its value. The default
+     * implementation returns the response of {@link #readEverything(int, int, String)}, which contains the
+     * description as well.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to read
+     * @return the description of the parameter
+     * @throws Exception if any communication or data handling problem occurs
+     */
+    default ReadDataDescriptionResponse readDataDescription(int slaveIndex, int slaveExtension, String idn)
+            throws Exception {
+        return this.readEverything(slaveIndex, slaveExtension, idn);
+    }
+
+    /**
+     * Reads the description of a parameter without blocking the calling thread. Failures are reported as
+     * exceptional completion with the same exceptions {@link #readDataDescription(int, int, String)} throws.
+     * The default implementation runs {@link #readDataDescription(int, int, String)} in the common pool.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to read
+     * @return a future of the description of the parameter
+     */
+    default CompletableFuture<ReadDataDescriptionResponse> readDataDescriptionAsync(int slaveIndex, int slaveExtension,
+                                                                                  String idn) {
+        return BlockingCalls.supplyAsync(() -> this.readDataDescription(slaveIndex, slaveExtension, idn));
+    }
+
+    /**
+     * Returns the data attribute of a parameter. Data attributes do not change for a given firmware, so they
+     * are cached and only read from the sercos device the first time. The default implementation reads the
+     * description of the parameter on every call.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter
+     * @return the data attribute of the parameter
+     * @throws Exception if any communication or data handling problem occurs
+     */
+    default DataAttribute getDataAttribute(int slaveIndex, int slaveExtension, String idn) throws Exception {
+        return this.readDataDescription(slaveIndex, slaveExtension, idn).getDataAttribute();
+    }
+
+    /**
+     * Writes the value of a parameter. The value is encoded according to the data attribute of the parameter,
+     * see {@link Data#encode(Object, DataAttribute)}. The default implementation throws a
+     * {@link SipServiceNotSupportedException}.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to write
+     * @param value          the value, e.g. a {@link Number}, a {@link String}, an array of numbers or {@link Data}
+     * @throws Exception if the value cannot be encoded or any communication problem occurs
+     */
+    default void writeData(int slaveIndex, int slaveExtension, String idn, Object value) throws Exception {
+        throw new SipServiceNotSupportedException("WriteData is not supported by " + this.getClass().getName());
+    }
+
+    /**
+     * Writes the value of a parameter without blocking the calling thread. Failures are reported as
+     * exceptional completion with the same exceptions {@link #writeData(int, int, String, Object)} throws.
+     * The default implementation runs {@link #writeData(int, int, String, Object)} in the common pool.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter one wants to write
+     * @param value          the value, e.g. a {@link Number}, a {@link String}, an array of numbers or {@link Data}
+     * @return a future which completes when the sercos device acknowledged the write
+     */
+    default CompletableFuture<Void> writeDataAsync(int slaveIndex, int slaveExtension, String idn, Object value) {
+        return BlockingCalls.supplyAsync(() -> {
+            this.writeData(slaveIndex, slaveExtension, idn, value);
+            return null;
+        });
+    }
+
+    /**
+     * Writes the values of several parameters and waits until all of them are acknowledged. The writes are
+     * pipelined instead of waiting for each acknowledgement before sending the next write. The default
+     * implementation writes one value after the other with {@link #writeData(int, int, String, Object)}.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param values         the values by idn, written in the iteration order of the map
+     * @throws Exception if one of the values cannot be encoded or written
+     */
+    default void writeDataBatch(int slaveIndex, int slaveExtension, Map<String, ?> values) throws Exception {
+        for (Map.Entry<String, ?> value : values.entrySet())
+            this.writeData(slaveIndex, slaveExtension, value.getKey(), value.getValue());
+    }
+
+    /**
+     * Writes the values of several parameters without blocking the calling thread. The default implementation
+     * runs {@link #writeDataBatch(int, int, Map)} in the common pool.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param values         the values by idn, written in the iteration order of the map
+     * @return a future which completes when all writes are acknowledged
+     */
+    default CompletableFuture<Void> writeDataBatchAsync(int slaveIndex, int slaveExtension, Map<String, ?> values) {
+        return BlockingCalls.supplyAsync(() -> {
+            this.writeDataBatch(slaveIndex, slaveExtension, values);
+            return null;
+        });
+    }
 }
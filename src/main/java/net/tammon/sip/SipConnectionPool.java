@@ -0,0 +1,281 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip;
+
+import net.tammon.sip.exceptions.SipCommunicationException;
+import net.tammon.sip.exceptions.SipException;
+import net.tammon.sip.exceptions.SipInternalException;
+import net.tammon.sip.exceptions.SipSocketTimeoutException;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SipConnectionPool keeps connected {@link TCPConnection}s to sercos devices and lends them out, so the
+ * socket connect and the S/IP handshake are not paid for every use. The number of connections per drive address
+ * and port is bounded. Several connections to one drive allow reads in parallel if the drive accepts several
+ * S/IP sessions.
+ * <p>
+ * Connections which have been idle for some time are validated with a ping before they are lent out. Idle
+ * connections are closed after half of the lease timeout the drive has granted them, before the drive closes
+ * them itself.
+ * <p>
+ * A borrowed connection must be handed back with {@link #release(SipConnection)} or, if it failed, with
+ * {@link #invalidate(SipConnection)}. It must not be disconnected by the borrower.
+ */
+public class SipConnectionPool implements Closeable {
+    private static final long VALIDATION_INTERVAL_MILLIS = 1000;
+
+    private final Properties properties;
+    private final int maxConnectionsPerDrive;
+    private final long borrowTimeoutMillis;
+    private final Map<InetSocketAddress, DrivePool> drives = new ConcurrentHashMap<>();
+    private final Map<SipConnection, DrivePool> borrowed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sip-pool-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool whose connections use the default properties
+     *
+     * @param maxConnectionsPerDrive maximum number of connections to one drive address and port
+     */
+    public SipConnectionPool(int maxConnectionsPerDrive) {
+        this(AbstractSipConnection.getDefaultProperties(null, false, 1), maxConnectionsPerDrive);
+    }
+
+    /**
+     * Creates a pool whose connections use the given properties. Settings missing in the given properties are
+     * taken from sipDefault.properties. The host and the sip port of the properties are replaced by the drive
+     * address of each borrow. Borrowing waits at most busyTimeout for a free connection.
+     *
+     * @param properties             sip connection properties (see sipDefault.properties)
+     * @param maxConnectionsPerDrive maximum number of connections to one drive address and port
+     */
+    public SipConnectionPool(Properties properties, int maxConnectionsPerDrive) {
+        if (maxConnectionsPerDrive < 1)
+            throw new IllegalArgumentException("The maximum number of connections per drive must be at least 1");
+        this.properties = AbstractSipConnection.getDefaultProperties();
+        this.properties.putAll(properties);
+        // the pool closes idle connections, so they need no keep alive
+        this.properties.put("keepAlive", false);
+        this.maxConnectionsPerDrive = maxConnectionsPerDrive;
+        this.borrowTimeoutMillis = Long.parseLong(this.properties.getProperty("busyTimeout"));
+        // the drives may grant a shorter lease than the requested one, so the evictor runs at least once a second
+        long requestedIdleTimeout = Long.parseLong(this.properties.getProperty("leaseTimeout")) / 2;
+        long evictionPeriod = Math.max(1, Math.min(requestedIdleTimeout / 2, VALIDATION_INTERVAL_MILLIS));
+        this.evictor.scheduleAtFixedRate(this::evictIdleConnections, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection to the drive at the sip port of the pool properties
+     *
+     * @param host domain name or IP Address of the drive
+     * @return a connected connection to the drive
+     * @throws SipException in case no connection became available in time or of communication problems
+     */
+    public SipConnection borrow(String host) throws SipException {
+        return this.borrow(host, Integer.parseInt(this.properties.getProperty("sipPort")));
+    }
+
+    /**
+     * Borrows a connection to the drive. An idle connection is reused if there is one, otherwise a new
+     * connection is established. If the maximum number of connections to the drive is lent out, the call
+     * waits until one is handed back.
+     *
+     * @param host    domain name or IP Address of the drive
+     * @param sipPort port of the S/IP server of the drive
+     * @return a connected connection to the drive
+     * @throws SipException in case no connection became available in time or of communication problems
+     */
+    public SipConnection borrow(String host, int sipPort) throws SipException {
+        if (this.closed) throw new SipInternalException("The connection pool has been closed");
+        InetSocketAddress address = new InetSocketAddress(resolve(host), sipPort);
+        DrivePool drivePool = this.drives.computeIfAbsent(address, key -> new DrivePool());
+        try {
+            if (!drivePool.permits.tryAcquire(this.borrowTimeoutMillis, TimeUnit.MILLISECONDS))
+                throw new SipSocketTimeoutException("No connection to " + address + " became available within "
+                        + this.borrowTimeoutMillis + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SipCommunicationException("Interrupted while waiting for a connection to " + address, e);
+        }
+        try {
+            AbstractSipConnection connection = this.takeIdleConnection(drivePool);
+            if (connection == null) connection = this.connect(address);
+            this.borrowed.put(connection, drivePool);
+            return connection;
+        } catch (SipException | RuntimeException e) {
+            drivePool.permits.release();
+            throw e;
+        }
+    }
+
+    private AbstractSipConnection takeIdleConnection(DrivePool drivePool) {
+        IdleConnection idle;
+        while ((idle = drivePool.idle.pollFirst()) != null) {
+            long idleMillis = System.currentTimeMillis() - idle.since;
+            if (idleMillis < idle.idleTimeoutMillis && idle.connection.isConnected()
+                    && (idleMillis < VALIDATION_INTERVAL_MILLIS || idle.connection.respondsToPing()))
+                return idle.connection;
+            idle.connection.disconnect();
+        }
+        return null;
+    }
+
+    private AbstractSipConnection connect(InetSocketAddress address) throws SipException {
+        Properties connectionProperties = new Properties();
+        connectionProperties.putAll(this.properties);
+        connectionProperties.setProperty("host", address.getAddress().getHostAddress());
+        connectionProperties.setProperty("sipPort", Integer.toString(address.getPort()));
+        return new TCPConnection(connectionProperties);
+    }
+
+    private static InetAddress resolve(String host) {
+        try {
+            return InetAddress.getByName(host);
+        } catch (UnknownHostException e) {
+            throw new SipInternalException(
+                    "Cannot resolve hostname. This is probably due to a misspelled hostname or bad dns configuration of host",
+                    e);
+        }
+    }
+
+    /**
+     * Hands a borrowed connection back to the pool, so it can be lent out again
+     *
+     * @param connection a connection borrowed from this pool
+     * @throws IllegalArgumentException if the connection is not borrowed from this pool
+     */
+    public void release(SipConnection connection) {
+        DrivePool drivePool = this.returnConnection(connection);
+        if (this.closed || !connection.isConnected()) {
+            connection.disconnect();
+        } else {
+            IdleConnection idle = new IdleConnection((AbstractSipConnection) connection);
+            drivePool.idle.addFirst(idle);
+            // the pool may have been closed while the connection was added
+            if (this.closed && drivePool.idle.removeFirstOccurrence(idle)) connection.disconnect();
+        }
+        drivePool.permits.release();
+    }
+
+    /**
+     * Hands a borrowed connection back to the pool which must not be lent out again, e.g. because it failed.
+     * The connection is disconnected.
+     *
+     * @param connection a connection borrowed from this pool
+     * @throws IllegalArgumentException if the connection is not borrowed from this pool
+     */
+    public void invalidate(SipConnection connection) {
+        DrivePool drivePool = this.returnConnection(connection);
+        connection.disconnect();
+        drivePool.permits.release();
+    }
+
+    private DrivePool returnConnection(SipConnection connection) {
+        DrivePool drivePool = this.borrowed.remove(connection);
+        if (drivePool == null)
+            throw new IllegalArgumentException("The connection is not borrowed from this pool");
+        return drivePool;
+    }
+
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (DrivePool drivePool : this.drives.values()) {
+            // the oldest connections are at the end of the deque
+            IdleConnection idle;
+            while ((idle = drivePool.idle.peekLast()) != null && now - idle.since >= idle.idleTimeoutMillis) {
+                if (drivePool.idle.removeLastOccurrence(idle))
+                    idle.connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * @return the number of connections which are lent out
+     */
+    public int getBorrowedCount() {
+        return this.borrowed.size();
+    }
+
+    /**
+     * @return the number of connected connections which wait to be lent out
+     */
+    public int getIdleCount() {
+        return this.drives.values().stream().mapToInt(drivePool -> drivePool.idle.size()).sum();
+    }
+
+    public int getMaxConnectionsPerDrive() {
+        return maxConnectionsPerDrive;
+    }
+
+    /**
+     * Disconnects all idle connections. Borrowed connections are disconnected when they are handed back.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.evictor.shutdownNow();
+        for (DrivePool drivePool : this.drives.values()) {
+            IdleConnection idle;
+            while ((idle = drivePool.idle.pollFirst()) != null)
+                idle.connection.disconnect();
+        }
+    }
+
+    /**
+     * The connections to one drive address and port
+     */
+    private final class DrivePool {
+        private final Semaphore permits = new Semaphore(maxConnectionsPerDrive, true);
+        // most recently used first, so the least used connections become idle long enough to be evicted
+        private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    }
+
+    private static final class IdleConnection {
+        private final AbstractSipConnection connection;
+        private final long since = System.currentTimeMillis();
+        private final long idleTimeoutMillis;
+
+        private IdleConnection(AbstractSipConnection connection) {
+            this.connection = connection;
+            this.idleTimeoutMillis = connection.getLeaseTimeout() / 2;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.tammon.sip;
+
+import net.tammon.sip.exceptions.SipCommunicationException;
+import net.tammon.sip.exceptions.SipInternalException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The SipEventLoop multiplexes the socket channels of many {@link NioSipConnection}s on a single thread
+ * using a {@link Selector}. All I/O and the bookkeeping of the connections run on this thread. Several event
+ * loops can be used to spread a large number of connections over a few threads. The event loop thread is a daemon thread. It stops when {@link #close()} is called.
+ */
+public final class SipEventLoop implements Closeable {
+    private static SipEventLoop defaultEventLoop;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates and starts a new event loop
+     */
+    public SipEventLoop() {
+        this("sip-event-loop");
+    }
+
+    /**
+     * Creates and starts a new event loop
+     *
+     * @param name name of the event loop thread
+     */
+    public SipEventLoop(String name) {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new SipInternalException("Cannot open selector for the S/IP event loop", e);
+        }
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Returns the event loop which is shared by all connections that are created without an explicit
+     * event loop. It is created on first use.
+     *
+     * @return the default event loop
+     */
+    public static synchronized SipEventLoop getDefault() {
+        if (defaultEventLoop == null || defaultEventLoop.closed)
+            defaultEventLoop = new SipEventLoop("sip-event-loop-default");
+        return defaultEventLoop;
+    }
+
+    /**
+     * @return true if the calling thread is the thread of this event loop
+     */
+    boolean inEventLoop() {
+        return Thread.currentThread() == this.thread;
+    }
+
+    /**
+     * Runs the task on the event loop thread
+     *
+     * @param task task to run
+     * @throws SipInternalException if the event loop has been closed and the task will not run
+     */
+    void execute(Runnable task) {
+        if (this.closed)
+            throw new SipInternalException("The S/IP event loop has been closed");
+        this.tasks.add(task);
+        // the event loop may have run its last tasks after the check, a task it has not taken is never run
+        if (this.closed && this.tasks.remove(task))
+            throw new SipInternalException("The S/IP event loop has been closed");
+        if (!this.inEventLoop() && this.wakeupPending.compareAndSet(false, true))
+            this.selector.wakeup();
+    }
+
+    /**
+     * Registers the channel of a connection at the selector of this event loop. Must be called on the
+     * event loop thread.
+     *
+     * @param channel    the channel to register
+     * @param ops        the interest set
+     * @param connection the connection which handles the selected keys of the channel
+     * @return the selection key of the channel
+     * @throws ClosedChannelException if the channel is closed
+     */
+    SelectionKey register(SelectableChannel channel, int ops, NioSipConnection connection) throws ClosedChannelException {
+        return channel.register(this.selector, ops, connection);
+    }
+
+    /**
+     * Stops the event loop. All connections of this event loop are closed.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.selector.wakeup();
+    }
+
+    private void run() {
+        while (!this.closed) {
+            try {
+                if (this.tasks.isEmpty())
+                    this.selector.select();
+                else
+                    this.selector.selectNow();
+                this.wakeupPending.set(false);
+                this.processSelectedKeys();
+                this.runTasks();
+            } catch (IOException | RuntimeException e) {
+                // a failing connection or task must not stop the other connections of the event loop
+                e.printStackTrace();
+            }
+        }
+        this.closeConnections();
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            ((NioSipConnection) key.attachment()).handleSelection(key);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void closeConnections() {
+        SipCommunicationException exception = new SipCommunicationException("The S/IP event loop has been closed");
+        for (SelectionKey key : this.selector.keys())
+            ((NioSipConnection) key.attachment()).close(exception);
+        this.runTasks();
+        try {
+            this.selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
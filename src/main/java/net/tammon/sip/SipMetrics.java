@@ -0,0 +1,128 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip;
+
+import net.tammon.sip.packets.CommonErrorCodes;
+
+import java.net.InetAddress;
+
+/**
+ * The SipMetrics receive the measurements of sip connections, e.g. to record them in a metrics registry like
+ * Micrometer. All methods do nothing by default, so implementations only override the measurements they are
+ * interested in. A connection reports to {@link #NOOP} unless other metrics are set with
+ * {@link TCPConnection#setMetrics(SipMetrics)}, and skips taking timestamps in that case.
+ * <p>
+ * The methods are called on the threads which send and receive the requests, e.g. the reader thread of a
+ * connection or an event loop. They must be thread safe and must not block.
+ */
+public interface SipMetrics {
+
+    /**
+     * Metrics which drop all measurements
+     */
+    SipMetrics NOOP = new SipMetrics() {
+    };
+
+    /**
+     * A request has been written to the connection
+     *
+     * @param drive       the address of the sercos device
+     * @param messageType the message type of the request
+     * @param inFlight    the number of requests waiting for their response including this one
+     */
+    default void requestSent(InetAddress drive, int messageType, int inFlight) {
+    }
+
+    /**
+     * The response to a request has been received, which may also be an exception response
+     *
+     * @param drive          the address of the sercos device
+     * @param messageType    the message type of the request
+     * @param roundTripNanos the time from writing the request until its response has been received
+     */
+    default void responseReceived(InetAddress drive, int messageType, long roundTripNanos) {
+    }
+
+    /**
+     * The sercos device answered a request with an exception response
+     *
+     * @param drive             the address of the sercos device
+     * @param messageType       the message type of the request
+     * @param commonErrorCode   the common error code of the exception response
+     * @param specificErrorCode the service specific error code of the exception response
+     */
+    default void exceptionResponse(InetAddress drive, int messageType, CommonErrorCodes commonErrorCode,
+                                   int specificErrorCode) {
+    }
+
+    /**
+     * The sercos device answered a request with a busy response, the request is retried later
+     *
+     * @param drive       the address of the sercos device
+     * @param messageType the message type of the request
+     */
+    default void busyResponse(InetAddress drive, int messageType) {
+    }
+
+    /**
+     * A request has not been answered within the requestTimeout
+     *
+     * @param drive       the address of the sercos device
+     * @param messageType the message type of the request
+     */
+    default void requestTimedOut(InetAddress drive, int messageType) {
+    }
+
+    /**
+     * @param drive the address of the sercos device
+     * @param bytes the number of bytes of the requests written to the connection
+     */
+    default void bytesWritten(InetAddress drive, int bytes) {
+    }
+
+    /**
+     * @param drive the address of the sercos device
+     * @param bytes the number of bytes of a response read from the connection
+     */
+    default void bytesRead(InetAddress drive, int bytes) {
+    }
+
+    /**
+     * A keep alive ping has failed
+     *
+     * @param drive the address of the sercos device
+     * @param cause the reason of the failure
+     */
+    default void pingFailed(InetAddress drive, Throwable cause) {
+    }
+
+    /**
+     * A {@link ResilientSipConnection} has replaced its lost connection by a new one
+     *
+     * @param drive the address of the sercos device
+     */
+    default void reconnected(InetAddress drive) {
+    }
+}
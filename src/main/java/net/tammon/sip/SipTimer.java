@@ -0,0 +1,230 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The SipTimer is a hashed timer wheel which runs the timeouts of all sip connections on one thread. Scheduling
+ * and cancelling a timeout is O(1) regardless of the number of pending timeouts, so every connection and every
+ * request can have its own timeout without a thread per connection.
+ * <p>
+ * The wheel advances one bucket per tick. A timeout is put into the bucket of its deadline and carries the
+ * number of full wheel rotations left until it expires. Timeouts fire at most one tick late. New and cancelled
+ * timeouts are handed to the timer thread through a lock-free queue and a state flag, so callers never block.
+ * <p>
+ * The tasks run on the timer thread and must not block. Tasks which need to block have to hand off the work.
+ */
+final class SipTimer {
+    private static final long DEFAULT_TICK_MILLIS = 10;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+    private static SipTimer defaultTimer;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private final Thread thread;
+    private volatile boolean stopped;
+    // only accessed by the timer thread
+    private long tick;
+
+    /**
+     * Creates a timer and starts its thread
+     *
+     * @param name       the name of the timer thread
+     * @param tick       the duration of one tick, the resolution of the timer
+     * @param unit       the unit of the tick duration
+     * @param wheelSize  the number of buckets of the wheel, rounded up to a power of two
+     */
+    SipTimer(String name, long tick, TimeUnit unit, int wheelSize) {
+        if (tick <= 0) throw new IllegalArgumentException("The tick duration must be positive");
+        if (wheelSize < 1 || wheelSize > 1 << 20)
+            throw new IllegalArgumentException("The wheel size must be between 1 and 2^20");
+        this.tickNanos = unit.toNanos(tick);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new Bucket[Math.max(1, size)];
+        for (int i = 0; i < this.wheel.length; i++) this.wheel[i] = new Bucket();
+        this.mask = this.wheel.length - 1;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Returns the timer which is shared by all connections. It is created on first use.
+     *
+     * @return the default timer
+     */
+    static synchronized SipTimer getDefault() {
+        if (defaultTimer == null || defaultTimer.stopped)
+            defaultTimer = new SipTimer("sip-timer", DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+        return defaultTimer;
+    }
+
+    /**
+     * Runs the task once after the delay
+     *
+     * @param task  the task to run on the timer thread
+     * @param delay the delay after which the task runs
+     * @param unit  the unit of the delay
+     * @return the timeout which can be cancelled
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (this.stopped) throw new IllegalStateException("The timer has been stopped");
+        long deadline = System.nanoTime() - this.startNanos + Math.max(0, unit.toNanos(delay));
+        Timeout timeout = new Timeout(task, deadline);
+        this.added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the timer thread. Pending timeouts do not run anymore.
+     */
+    void stop() {
+        this.stopped = true;
+        LockSupport.unpark(this.thread);
+    }
+
+    private void run() {
+        while (!this.stopped) {
+            long deadline = (this.tick + 1) * this.tickNanos;
+            long sleepNanos;
+            while (!this.stopped && (sleepNanos = deadline - (System.nanoTime() - this.startNanos)) > 0)
+                LockSupport.parkNanos(this, sleepNanos);
+            this.transferAddedTimeouts();
+            this.wheel[(int) (this.tick & this.mask)].expire();
+            this.tick++;
+        }
+    }
+
+    private void transferAddedTimeouts() {
+        Timeout timeout;
+        while ((timeout = this.added.poll()) != null) {
+            if (timeout.state != Timeout.PENDING) continue;
+            // a timeout whose deadline has already passed goes into the current bucket
+            long ticks = Math.max(timeout.deadline / this.tickNanos, this.tick);
+            timeout.remainingRounds = (ticks - this.tick) / this.wheel.length;
+            this.wheel[(int) (ticks & this.mask)].add(timeout);
+        }
+    }
+
+    /**
+     * A scheduled task of the timer
+     */
+    static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = PENDING;
+        // only accessed by the timer thread
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout previous;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout. The timer thread drops it when it reaches its bucket.
+         *
+         * @return true if the task will not run, false if it already ran
+         */
+        boolean cancel() {
+            return STATE.compareAndSet(this, PENDING, CANCELLED) || this.state == CANCELLED;
+        }
+
+        boolean isCancelled() {
+            return this.state == CANCELLED;
+        }
+
+        boolean isExpired() {
+            return this.state == EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, PENDING, EXPIRED)) return;
+            try {
+                this.task.run();
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * The doubly linked list of the timeouts of one wheel position. Only accessed by the timer thread.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            if (this.head == null) {
+                this.head = this.tail = timeout;
+            } else {
+                this.tail.next = timeout;
+                timeout.previous = this.tail;
+                this.tail = timeout;
+            }
+        }
+
+        private void expire() {
+            Timeout timeout = this.head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.state != Timeout.PENDING) {
+                    this.remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    this.remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.previous != null) timeout.previous.next = timeout.next;
+            else this.head = timeout.next;
+            if (timeout.next != null) timeout.next.previous = timeout.previous;
+            else this.tail = timeout.previous;
+            timeout.next = timeout.previous = null;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip;
+
+import net.tammon.sip.exceptions.SipSocketTimeoutException;
+import net.tammon.sip.packets.Data;
+import net.tammon.sip.packets.Idn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The SubscriptionScheduler polls parameters of a {@link SipConnection} periodically and passes the read data
+ * to the registered {@link SubscriptionListener}s. Subscriptions of the same parameter are coalesced: the
+ * parameter is read once at the shortest subscribed period and every listener receives the reads that are due
+ * for its own period. The first reads of different parameters are spread over their period, so the parameters
+ * are not read in bursts.
+ * <p>
+ * The scheduler respects the timing values of the connection: a read which could not be started within
+ * maxDelay of its due time is skipped, and a parameter is not read again while its last read has not been
+ * answered. If a read is not answered within busyTimeout the listeners are notified with a
+ * {@link SipSocketTimeoutException}.
+ * <p>
+ * Listeners are called on the single thread of the scheduler and must not block.
+ */
+public class SubscriptionScheduler implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionScheduler.class);
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+
+    private final SipConnection connection;
+    private final long maxDelayNanos;
+    private final long busyTimeoutNanos;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sip-subscriptions");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // confined to the executor thread
+    private final Map<Long, Poll> polls = new HashMap<>();
+    private long pollCount;
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+
+    /**
+     * Creates a scheduler which reads the parameters from the given connection
+     *
+     * @param connection the connection to read from
+     */
+    public SubscriptionScheduler(SipConnection connection) {
+        this.connection = connection;
+        if (connection instanceof AbstractSipConnection) {
+            this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(((AbstractSipConnection) connection).getMaxDelay());
+            this.busyTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(((AbstractSipConnection) connection).getBusyTimeout());
+        } else {
+            Properties properties = AbstractSipConnection.getDefaultProperties();
+            this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(properties.getProperty("maxDelay")));
+            this.busyTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(properties.getProperty("busyTimeout")));
+        }
+    }
+
+    /**
+     * Subscribes to a parameter. The listener receives the data of the parameter at least every period.
+     *
+     * @param slaveIndex     the slave index of the sercos device (default: 0)
+     * @param slaveExtension the slave extension of the sercos device (default: 0)
+     * @param idn            the 16-bit or 32-bit identifier of the parameter
+     * @param period         the period the listener wants to receive the data in
+     * @param timeUnit       unit of the period
+     * @param listener       the listener which receives the data
+     * @return the subscription which can be cancelled
+     * @throws IllegalArgumentException if the idn is invalid or the period is not positive
+     */
+    public Subscription subscribe(int slaveIndex, int slaveExtension, String idn, long period, TimeUnit timeUnit,
+                                  SubscriptionListener listener) {
+        if (period <= 0) throw new IllegalArgumentException("The period must be positive");
+        long key = getKey(slaveIndex, slaveExtension, idn);
+        Subscription subscription = new Subscription(key, timeUnit.toNanos(period), listener);
+        this.execute(() -> {
+            if (subscription.cancelled) return;
+            Poll poll = this.polls.computeIfAbsent(key, k -> new Poll(slaveIndex, slaveExtension, idn));
+            // the first read after the subscription is due
+            subscription.nextDueNanos = System.nanoTime();
+            poll.subscriptions.add(subscription);
+            poll.reschedule();
+        });
+        this.subscriptionCount.incrementAndGet();
+        return subscription;
+    }
+
+    private static long getKey(int slaveIndex, int slaveExtension, String idn) {
+        int eIdn = Idn.of(idn).getEIdn();
+        return ((long) (slaveIndex & 0xFFFF) << 48) | ((long) (slaveExtension & 0xFFFF) << 32) | (eIdn & 0xFFFFFFFFL);
+    }
+
+    private void execute(Runnable task) {
+        try {
+            this.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // the scheduler has been closed
+        }
+    }
+
+    /**
+     * @return the number of active subscriptions
+     */
+    public int getSubscriptionCount() {
+        return this.subscriptionCount.get();
+    }
+
+    /**
+     * @return the number of parameters which are polled
+     */
+    public int getPollCount() {
+        try {
+            return this.executor.submit(this.polls::size).get();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Cancels all subscriptions and stops the scheduler. The connection is not disconnected.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+        this.subscriptionCount.set(0);
+    }
+
+    /**
+     * The periodic read of one parameter for all of its subscriptions
+     */
+    private final class Poll {
+        private final int slaveIndex;
+        private final int slaveExtension;
+        private final Idn idn;
+        private final List<Subscription> subscriptions = new ArrayList<>();
+        private final double phase;
+        private long periodNanos;
+        private long firstTickNanos;
+        private ScheduledFuture<?> task;
+        private PendingRead pendingRead;
+
+        private Poll(int slaveIndex, int slaveExtension, String idn) {
+            this.slaveIndex = slaveIndex;
+            this.slaveExtension = slaveExtension;
+            this.idn = Idn.of(idn);
+            // spreads the first reads of all parameters evenly over their periods
+            double phase = ++pollCount * GOLDEN_RATIO_FRACTION;
+            this.phase = phase - Math.floor(phase);
+        }
+
+        /**
+         * Restarts the periodic read if the shortest period of the subscriptions has changed
+         */
+        private void reschedule() {
+            long periodNanos = this.subscriptions.stream().mapToLong(s -> s.periodNanos).min().orElse(0);
+            if (periodNanos == this.periodNanos) return;
+            if (this.task != null) this.task.cancel(false);
+            this.periodNanos = periodNanos;
+            long initialDelayNanos = (long) (this.phase * periodNanos);
+            this.firstTickNanos = System.nanoTime() + initialDelayNanos;
+            this.task = executor.scheduleAtFixedRate(this::tick, initialDelayNanos, periodNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void tick() {
+            long now = System.nanoTime();
+            long tickNanos = now - Math.floorMod(now - this.firstTickNanos, this.periodNanos);
+            // skips reads which are too late, the next one is due soon
+            if (now - tickNanos > maxDelayNanos) return;
+            PendingRead pending = this.pendingRead;
+            if (pending != null && !pending.future.isDone()) {
+                if (!pending.timeoutReported && now - pending.sinceNanos > busyTimeoutNanos) {
+                    pending.timeoutReported = true;
+                    this.notifyError(new SipSocketTimeoutException("The S/IP device did not respond to the read of "
+                            + this.idn + " within the busy timeout"));
+                }
+                return;
+            }
+            PendingRead read = new PendingRead(
+                    connection.readDataAsync(this.slaveIndex, this.slaveExtension, this.idn), now);
+            this.pendingRead = read;
+            read.future.whenComplete((data, cause) -> execute(() -> {
+                if (cause == null) this.notifyData(data, tickNanos);
+                // the listeners already know that this read has failed
+                else if (!read.timeoutReported)
+                    this.notifyError(cause instanceof CompletionException ? cause.getCause() : cause);
+            }));
+        }
+
+        private void notifyData(Data data, long tickNanos) {
+            for (Subscription subscription : new ArrayList<>(this.subscriptions)) {
+                if (tickNanos - subscription.nextDueNanos < 0) continue;
+                // tolerates reads which are up to half a poll period early for slower subscriptions
+                subscription.nextDueNanos = tickNanos + subscription.periodNanos - this.periodNanos / 2;
+                try {
+                    subscription.listener.onData(data);
+                } catch (RuntimeException e) {
+                    logger.warn("The subscription listener of {} failed to handle its data", this.idn.getIdn(), e);
+                }
+            }
+        }
+
+        private void notifyError(Throwable cause) {
+            for (Subscription subscription : new ArrayList<>(this.subscriptions)) {
+                try {
+                    subscription.listener.onError(cause);
+                } catch (RuntimeException e) {
+                    logger.warn("The subscription listener of {} failed to handle an error", this.idn.getIdn(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A read which has been sent and not yet been handled, confined to the executor thread
+     */
+    private static final class PendingRead {
+        private final CompletableFuture<Data> future;
+        private final long sinceNanos;
+        private boolean timeoutReported;
+
+        private PendingRead(CompletableFuture<Data> future, long sinceNanos) {
+            this.future = future;
+            this.sinceNanos = sinceNanos;
+        }
+    }
+
+    /**
+     * A registered subscription of a parameter
+     */
+    public final class Subscription {
+        private final long key;
+        private final long periodNanos;
+        private final SubscriptionListener listener;
+        private long nextDueNanos;
+        private volatile boolean cancelled;
+
+        private Subscription(long key, long periodNanos, SubscriptionListener listener) {
+            this.key = key;
+            this.periodNanos = periodNanos;
+            this.listener = listener;
+        }
+
+        /**
+         * Stops the delivery of data to the listener. The parameter is not read anymore if this was its last
+         * subscription.
+         */
+        public void cancel() {
+            if (this.cancelled) return;
+            this.cancelled = true;
+            subscriptionCount.decrementAndGet();
+            execute(() -> {
+                Poll poll = polls.get(this.key);
+                if (poll == null || !poll.subscriptions.remove(this)) return;
+                if (poll.subscriptions.isEmpty()) {
+                    poll.task.cancel(false);
+                    polls.remove(this.key);
+                } else {
+                    poll.reschedule();
+                }
+            });
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
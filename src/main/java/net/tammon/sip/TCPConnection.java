@@ -30,60 +30,41 @@ import net.tammon.sip.packets.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.util.List;
-import java.util.Objects;
 import java.util.Properties;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The TCPConnection class implements the SipConnection Interface and creates a
  * sip connection via the TCP/IP protocol
  */
-public class TCPConnection implements SipConnection {
-	private InetAddress ipAddress;
-	private int maxDelay, leaseTimeout, busyTimeout, sipPort, sipVersion;
-	private int transactionId = 0;
-	private boolean connected = false;
-	private List<Integer> supportedMessages;
-	private Socket socketConnection;
-	private DataOutputStream dataOutputStream;
-	private DataInputStream dataInputStream;
-	private ScheduledExecutorService executorService;
+public class TCPConnection extends AbstractSipConnection {
+	private volatile SocketChannel socketChannel;
+	private final FrameReader frameReader = new FrameReader();
+	private final FrameWriter frameWriter = new FrameWriter();
+	private volatile RequestPipeline pipeline;
+	// a lock instead of a monitor, so a virtual thread blocking in socket I/O does not pin its carrier thread
+	private final ReentrantLock lock = new ReentrantLock();
 
 	public TCPConnection(Properties properties) throws SipException {
 		connect(properties);
 	}
 
 	private void connect(Properties properties) throws SipSocketTimeoutException, SipException {
-		try {
-			String host = null;
-			if (properties.containsKey("host")) {
-				host = properties.getProperty("host");
-			}
-			this.ipAddress = InetAddress.getByName((host == null) ? properties.getProperty("driveIp") : host);
-		} catch (UnknownHostException e) {
-			throw new SipInternalException(
-					"Cannot resolve hostname. This is probably due to a misspelled hostname or bad dns configuration of host",
-					e);
-
-		}
-
-		this.sipPort = Integer.parseInt(properties.getProperty("sipPort"));
-		this.leaseTimeout = Integer.parseInt(properties.getProperty("leaseTimeout"));
-		this.busyTimeout = Integer.parseInt(properties.getProperty("busyTimeout"));
-		this.maxDelay = Integer.parseInt(properties.getProperty("maxDelay"));
-		this.sipVersion = Integer.parseInt(properties.getProperty("sipVersion"));
+		this.readProperties(properties);
 
 		this.connectSocket();
 		this.connectSip();
+		// one request at a time needs no reader and writer thread, the calling thread exchanges it itself
+		if (this.maxInFlight > 1)
+			this.pipeline = new RequestPipeline(this, this.socketChannel, this.frameReader, this.socketChannel,
+					this.frameWriter, this.maxInFlight);
 
-		boolean keepAlive = (boolean) properties.get("keepAlive");
-		if (keepAlive)
-			this.restartKeepAliveTimer();
+		if (this.keepAlive)
+			this.startKeepAlive();
 	}
 
 	/**
@@ -105,12 +86,33 @@ public class TCPConnection implements SipConnection {
 	 *             in case of communication problems
 	 */
 	public TCPConnection(String host, boolean keepAlive) throws SipException {
-		Properties properties = getDefaultProperties();
-		properties.put("keepAlive", keepAlive);
-		if (host != null) {
-			properties.put("host", host);
-		}
-		connect(properties);
+		this(host, keepAlive, 1);
+	}
+
+	/**
+	 * Establishes a pipelined TCP connection to a sercos device with given IP
+	 * Address
+	 * <p>
+	 * A pipelined connection sends up to maxInFlight requests to the sercos device
+	 * without waiting for the responses of the previous requests. The responses are
+	 * matched to the requests by their transaction id. Therefore multiple threads
+	 * can read data via the same connection at a time. A maxInFlight of 1 results
+	 * in one request at a time, which is sent and answered on the calling thread
+	 * without the reader and writer threads of a pipelined connection.
+	 *
+	 * @param host
+	 *            domain name or IP Address of the drive
+	 * @param keepAlive
+	 *            flag if the connection should stay alive even if no request are
+	 *            sent
+	 * @param maxInFlight
+	 *            maximum number of requests that are sent without having received
+	 *            their responses
+	 * @throws SipException
+	 *             in case of communication problems
+	 */
+	public TCPConnection(String host, boolean keepAlive, int maxInFlight) throws SipException {
+		connect(getDefaultProperties(host, keepAlive, maxInFlight));
 	}
 
 	/**
@@ -140,21 +142,6 @@ public class TCPConnection implements SipConnection {
 		this(host, false);
 	}
 
-	/**
-	 * @return sipDefault properties file as {@link Properties} Object
-	 */
-	private Properties getDefaultProperties() {
-		InputStream inputStream = ClassLoader.getSystemResourceAsStream("sipDefault.properties");
-		Properties properties = new Properties();
-		try {
-			properties.load(inputStream);
-			inputStream.close();
-		} catch (IOException e) {
-			throw new SipInternalException("Problem occurred while trying to load sipDefault.properties", e);
-		}
-		return properties;
-	}
-
 	/**
 	 * Establishes a new sip connection by reconnecting the socket and the sercos
 	 * device. Resets the list of supported messages
@@ -162,13 +149,12 @@ public class TCPConnection implements SipConnection {
 	 * @throws SipSocketTimeoutException
 	 *             in case of a socket timeout
 	 */
-	private synchronized void connectSocket() throws SipSocketTimeoutException {
-		this.transactionId = 0;
-		this.socketConnection = new Socket();
+	private void connectSocket() throws SipSocketTimeoutException {
+		this.resetTransactionId();
+		this.lock.lock();
 		try {
-			this.socketConnection.connect(new InetSocketAddress(this.ipAddress, this.sipPort), busyTimeout);
-			this.dataOutputStream = new DataOutputStream(this.socketConnection.getOutputStream());
-			this.dataInputStream = new DataInputStream(this.socketConnection.getInputStream());
+			this.socketChannel = SocketChannel.open();
+			this.socketChannel.socket().connect(new InetSocketAddress(this.ipAddress, this.sipPort), busyTimeout);
 			this.supportedMessages = null;
 		} catch (SocketTimeoutException e) {
 			throw new SipSocketTimeoutException(
@@ -179,159 +165,120 @@ public class TCPConnection implements SipConnection {
 			// throw new SipInternalException("An internal S/IP Exception occured", e);
 			throw new SipInternalException(
 					"Probably Drive is not online or the IP:'" + this.ipAddress.toString() + "' is wrong.", e);
+		} finally {
+			this.lock.unlock();
 		}
 	}
 
-	/**
-	 * Generates synchronized a new transaction id for a new sip interaction by
-	 * increasing the current transaction id by one.
-	 *
-	 * @return new transaction id
-	 */
-	private synchronized int getNewTransactionId() {
-		return this.transactionId++;
-	}
-
 	/**
 	 * This method is the general abstraction for all sip tcp communication between
-	 * the library and the sercos device. It takes tcp request and response packets
-	 * of the sip library. It sends the request and returns the response. The tcp
-	 * send and receive logic is fully synchronized to avoid multiple instances and
-	 * therefor requests at a time.
+	 * the library and the sercos device if only one request may be in flight. It
+	 * sends the request and reads its response on the calling thread. A busy
+	 * response is answered by sending the request again after the busy retry delay.
+	 * The tcp send and receive logic is fully locked to avoid multiple requests at
+	 * a time.
+	 * <p>
+	 * The blocking read is ended by closing the channel once requestTimeout has
+	 * passed. A late response would otherwise be taken for the response of the
+	 * next request, so the connection is closed as well if a packet cannot be
+	 * written or read completely.
 	 *
 	 * @param request
 	 *            sip request tcp packet
-	 * @param response
-	 *            sip response tcp packet type (generally empty initialized object)
+	 * @param responseClass
+	 *            sip response tcp packet type
 	 * @return sip response tcp packet of the given type with the packet data set to
 	 *         the object
 	 * @throws SipException
 	 *             in case of communication problems
 	 */
-	private synchronized Response getTcpResponse(Request request, Class response) throws SipException {
-		if (this.isSupported(request.getMessageType()))
-			throw new SipServiceNotSupportedException("The requested operation " + request.getClass().getSimpleName()
-					+ " is not in the drive's list of supported messages");
-
-		sendDataToServer(request.getTcpMsgAsByteArray());
-
-		byte[] rawResponse = getRawResponseFromSocket();
-		return getResponse(rawResponse, request, response);
+	private Response exchange(Request request, Class responseClass) throws SipException {
+		this.lock.lock();
+		try {
+			CompletableFuture<Response> deadline = new CompletableFuture<>();
+			this.startRequestTimeout(request, deadline, this::closeChannel);
+			try {
+				int busyRetries = 0;
+				long busySinceNanos = 0;
+				while (true) {
+					ByteBuffer rawResponse = this.sendAndReceive(request, deadline);
+					if (!Busy.isBusy(rawResponse))
+						return this.getResponse(rawResponse, request, responseClass);
+					if (busyRetries == 0)
+						busySinceNanos = System.nanoTime();
+					long delay = this.getBusyRetryDelay(busyRetries++, busySinceNanos);
+					if (delay < 0)
+						throw this.busyTimeoutExceeded(request);
+					Thread.sleep(delay);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SipCommunicationException("Interrupted while waiting to retry a busy S/IP request", e);
+			} finally {
+				deadline.complete(null);
+			}
+		} finally {
+			this.lock.unlock();
+		}
 	}
 
-	/**
-	 * Returns an instantiated object of specified response class with the data of
-	 * the raw response. In addition to that this method checks if the data is valid
-	 * and matches the request.
-	 *
-	 * @param rawResponse
-	 *            raw data from socket
-	 * @param request
-	 *            the request object that belongs to the response
-	 * @param responseClass
-	 *            specifies the response class which will be used as instantiated
-	 *            object for return type
-	 * @return response with data from type responseClass
-	 * @throws SipProtocolException
-	 *             in case the sercos device threw an communication exception (e.g.
-	 *             invalid request) or in case of a wrong transaction id
-	 * @throws SipServiceNotSupportedException
-	 *             in case the sercos device does not support the requested message
-	 *             type
-	 */
-	private Response getResponse(byte[] rawResponse, Request request, Class responseClass)
-			throws SipProtocolException, SipServiceNotSupportedException {
+	private ByteBuffer sendAndReceive(Request request, CompletableFuture<Response> deadline) throws SipException {
 		try {
-			Response response = (Response) responseClass.newInstance();
-
-			Head header = new Head(rawResponse);
-
-			// Check if we got the right response to our request
-			if (header.getTransactionId() != request.getTransactionId())
-				throw new SipProtocolException(
-						"The response transaction ID " + response.getPacketHead().getTransactionId()
-								+ " doesn't match the request transaction ID " + request.getTransactionId());
-
-			// Check if Drive threw an communication exception
-			if (header.getMessageType() == 67) {
-				ExceptionResponse exceptionResponse = new ExceptionResponse(rawResponse);
-				if (exceptionResponse.getCommonErrorCode() == CommonErrorCodes.SERVICESPECIFIC)					 
-					throw new SipProtocolException("Drive threw Communication Exception."
-						+ ((exceptionResponse.getCommonErrorCode() == CommonErrorCodes.SERVICESPECIFIC)
-								? (" SIP-SpecificErrorCode: " + exceptionResponse.getSpecificErrorCode())
-								: (" SIP-CommonErrorCode: " + exceptionResponse.getCommonErrorCode())));
-				
-				if (exceptionResponse.getCommonErrorCode() == CommonErrorCodes.UNKNOWN_MESSAGE_TYPE)
-					throw new SipProtocolException("Service not supported.");					
-			}			
-			// TODO busy response einfügen
-
-			if (header.getMessageType() == response.getMessageType())
-				response.setData(rawResponse);
-			else
-				throw new SipInternalException("Invalid Message Type Response");
-			return response;
-		} catch (InstantiationException | IllegalAccessException e) {
-			throw new SipInternalException("Invalid Response Class Type. Cannot instantiate object.", e);
-		} catch (IOException e) {
-			throw new SipInternalException(
-					"An internal error occurred during conversion of raw data to response object.", e);
+			long sentNanos = this.metricsTimestamp();
+			sendDataToServer(request);
+			this.recordSent(request, 1);
+			ByteBuffer rawResponse = getRawResponseFromSocket();
+			this.recordReceived(request, sentNanos, rawResponse);
+			// the deadline may have closed the channel right after the response has been read
+			if (deadline.isCompletedExceptionally())
+				await(deadline);
+			return rawResponse;
+		} catch (SipException e) {
+			this.closeChannel();
+			// the channel has been closed by the deadline of the request
+			if (deadline.isCompletedExceptionally())
+				await(deadline);
+			throw e;
 		}
 	}
 
 	/**
-	 * Reads the data from the open Socket
+	 * Reads exactly one response packet from the open Socket
 	 *
-	 * @return the raw data of the socket as byte array
-	 * @throws SipCommunicationException
+	 * @return the raw data of the response packet as slice of the buffer of the
+	 *         {@link FrameReader}
+	 * @throws SipException
 	 *             in case of any problem occurs during socket communication
 	 */
-	private byte[] getRawResponseFromSocket() throws SipCommunicationException {
-		try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-			byte[] buffer = new byte[10024];
-			int readLength;
-			do {
-				readLength = dataInputStream.read(buffer);
-				if (readLength >= 0) {
-					outputStream.write(buffer, 0, readLength + 1);
-				}
-			} while (readLength >= 10024);
-
-			return outputStream.toByteArray();
+	private ByteBuffer getRawResponseFromSocket() throws SipException {
+		try {
+			return this.frameReader.readFrame(this.socketChannel);
 		} catch (IOException e) {
-			e.printStackTrace();// hinzugefügt von Philip Weis
 			throw new SipCommunicationException("Cannot read from Socket", e);
 		}
 	}
 
 	/**
-	 * sends a byte array via the open socket of this Sip connection
+	 * sends a request via the open socket of this Sip connection
 	 *
-	 * @param data
-	 *            the raw data to send
+	 * @param request
+	 *            the request to send
 	 * @throws SipCommunicationException
 	 *             in case of any problem occurs during socket communication
 	 */
-	private void sendDataToServer(byte[] data) throws SipCommunicationException {
+	private void sendDataToServer(Request request) throws SipCommunicationException {
 		try {
-			this.dataOutputStream.write(data);
-			this.dataOutputStream.flush();
+			this.frameWriter.lock.lock();
+			try {
+				this.frameWriter.write(request, this.socketChannel);
+			} finally {
+				this.frameWriter.lock.unlock();
+			}
 		} catch (IOException e) {
 			throw new SipCommunicationException("Cannot write output stream data to S/IP device", e);
 		}
 	}
 
-	/**
-	 * checks whether a message type is supported by the connected S/IP device
-	 *
-	 * @param messageType
-	 *            message type to check
-	 * @return message type supported
-	 */
-	private boolean isSupported(int messageType) {
-		return !Objects.isNull(this.supportedMessages) && !this.supportedMessages.contains(messageType);
-	}
-
 	/**
 	 * This method sends a sip connection request to the sercos device and handles
 	 * the incoming response
@@ -341,54 +288,15 @@ public class TCPConnection implements SipConnection {
 	 */
 	private void connectSip() throws SipException {
 		Connect request = new Connect(this.getNewTransactionId(), this.sipVersion, this.busyTimeout, this.leaseTimeout);
-		ConnectResponse response = (ConnectResponse) this.getTcpResponse(request, ConnectResponse.class);
-		synchronized (this) {
-			this.supportedMessages = IntStream.of(response.getSupportedMessageTypes()).boxed().collect(Collectors.toList());
-			this.connected = true;
-		}
+		this.setConnected((ConnectResponse) this.exchange(request, ConnectResponse.class));
 	}
 
-	/**
-	 * Checks if the sercos device responds to a ping sip message
-	 *
-	 * @return true if the device responds, false if it doesn't
-	 */
-	private boolean respondsToPing() {
-		Ping ping = new Ping(this.getNewTransactionId());
+	private void closeChannel() {
 		try {
-			this.getTcpResponse(ping, Pong.class);
-			return true; // hinzugefügt von Philip Weis
-			// } catch (SipException e) {
-		} catch (Exception e) { // abgeändert von Philip Weis
-			e.printStackTrace(); // hinzugefügt von Philip Weis
-			return false; // hinzugefügt von Philip Weis
+			this.socketChannel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
-		// return true; //abgeändert von Philip Weis
-	}
-
-	/**
-	 * This method is the general abstraction of all public ReadOnlyData methods. It
-	 * actually creates the request and response bodies and triggers the TCP send
-	 * and receive.
-	 *
-	 * @param slaveIndex
-	 *            the slave index of the sercos device (default: 0)
-	 * @param slaveExtension
-	 *            the slave extentension of the sercos device (default: 0)
-	 * @param idn
-	 *            the 16-bit or 32-bit identifier of the parameter one wants to read
-	 *            (e.g. "P-0-0100" or "S-0-0100.1.1")
-	 * @return the {@link ReadOnlyDataResponse} which is received after the tcp
-	 *         request
-	 * @throws SipException
-	 *             if any communication or data handling problem occurs
-	 */
-	public Data readData(int slaveIndex, int slaveExtension, String idn) throws SipException {
-		ReadOnlyData request = new ReadOnlyData(this.getNewTransactionId(), (short) slaveIndex, (short) slaveExtension,
-				idn);
-		ReadOnlyDataResponse response = (ReadOnlyDataResponse) this.getTcpResponse(request, ReadOnlyDataResponse.class);
-		
-		return response.getData();
 	}
 
 	/**
@@ -399,62 +307,54 @@ public class TCPConnection implements SipConnection {
 	 */
 	@Override
 	public boolean isConnected() {
-		synchronized (this) {
-			return connected && this.socketConnection.isConnected();
-		}
+		SocketChannel socketChannel = this.socketChannel;
+		return connected && socketChannel != null && socketChannel.isOpen() && socketChannel.isConnected();
 	}
 
 	/**
-	 * Returns a list of the supported message types of the sercos device. This list
-	 * is initially sent by the device during the sip connection process.
+	 * Sends the request via the {@link RequestPipeline} of this connection. If
+	 * only one request may be in flight, the request is exchanged on the calling
+	 * thread and the returned future is already completed.
 	 *
-	 * @return the list of supported message types
+	 * @param request
+	 *            sip request tcp packet
+	 * @param responseClass
+	 *            sip response tcp packet type
+	 * @return a future of the sip response tcp packet of the given type
 	 */
 	@Override
-	public List<Integer> getSupportedMessages() {
-		synchronized (this) {
-			return supportedMessages;
+	CompletableFuture<Response> sendAsync(Request request, Class responseClass) {
+		if (this.pipeline != null)
+			return this.pipeline.sendAsync(request, responseClass);
+		try {
+			return CompletableFuture.completedFuture(this.exchange(request, responseClass));
+		} catch (SipException | RuntimeException e) {
+			return failedFuture(e);
 		}
 	}
 
 	/**
-	 * Returns the IP address of the sercos device which is used by this TCP
-	 * connection.
-	 *
-	 * @return IP address of sercos device as {@link InetAddress}
+	 * Hands the request to the writer thread of the {@link RequestPipeline}. If
+	 * only one request may be in flight, the request is exchanged on a thread of
+	 * its own, which is rare as only the keep alive of idle connections uses it.
 	 */
 	@Override
-	public InetAddress getIpAddress() {
-		return ipAddress;
+	CompletableFuture<Response> sendWithoutBlocking(Request request, Class responseClass) {
+		if (this.pipeline != null)
+			return this.pipeline.sendLater(request, responseClass);
+		CompletableFuture<Response> future = new CompletableFuture<>();
+		ReaderThreads.newThread(() -> this.sendAsync(request, responseClass).whenComplete((response, throwable) -> {
+			if (throwable != null) future.completeExceptionally(throwable);
+			else future.complete(response);
+		}), "sip-ping-" + this.ipAddress.getHostAddress()).start();
+		return future;
 	}
 
-	/**
-	 * Returns the used sercos device port of the current sip connection
-	 *
-	 * @return used sercos device port
-	 */
 	@Override
-	public int getSipPort() {
-		return sipPort;
-	}
-
-	/**
-	 * Returns the used version of the Sercos Internet Protocol
-	 *
-	 * @return version of Sercos Internet Protocol
-	 */
-	@Override
-	public int getSipVersion() {
-		return sipVersion;
-	}
-
-	private void restartKeepAliveTimer() {
-		if (Objects.isNull(this.executorService))
-			this.executorService = Executors.newScheduledThreadPool(1);
-		else
-			this.executorService.shutdownNow();
-		final long period = Math.round(this.leaseTimeout * 0.7);
-		executorService.scheduleAtFixedRate(this::respondsToPing, 0, period, TimeUnit.MILLISECONDS);
+	List<CompletableFuture<Response>> sendAllAsync(List<Request> requests, Class responseClass) {
+		if (this.pipeline == null)
+			return super.sendAllAsync(requests, responseClass);
+		return this.pipeline.sendAllAsync(requests, responseClass);
 	}
 
 	/**
@@ -463,41 +363,13 @@ public class TCPConnection implements SipConnection {
 	 */
 	@Override
 	public void disconnect() {
-	  
-	  close();
+		if (this.pipeline != null)
+			this.pipeline.close();
 
-		if (executorService != null) {
-			try {
-				executorService.shutdownNow();
-			} catch (Exception e) {
-				// No exception handling here
-			}
-		}
+		this.stopKeepAlive();
 
-		try {
-		  synchronized (this) {
-			  if (socketConnection != null) {
-				  socketConnection.close();
-				  socketConnection = null;
-			  }
-		  }
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		// a request in progress holds the lock while its read blocks, closing the channel ends the read
+		if (this.socketChannel != null)
+			this.closeChannel();
 	}
-
-  private void close() {
-    try {
-      if (dataInputStream != null) {
-        dataInputStream.close();
-        dataInputStream = null;
-      }
-      if (dataOutputStream != null) {
-        dataOutputStream.close();
-        dataOutputStream = null;
-      }
-    } catch (Throwable e) {
-      e.printStackTrace();
-    }
-  }
 }
@@ -25,7 +25,9 @@
 
 package net.tammon.sip.packets;
 
-public class Connect extends AbstractPacket implements Request {
+import java.nio.ByteBuffer;
+
+public class Connect extends AbstractRequest {
 
     private static final int messageType = 63;
     private int sipVersion;
@@ -40,9 +42,14 @@ public class Connect extends AbstractPacket implements Request {
     }
 
     @Override
-    public byte[] getTcpMsgAsByteArray() {
-        return Data.concatenate(this.head.getDataAsByteArray(),
-                Data.getByteArray(this.sipVersion, this.busyTimeOut, this.leaseTimeout));
+    public int getTcpMsgLength() {
+        return Head.LENGTH + 12;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        this.head.writeTo(buffer);
+        buffer.putInt(this.sipVersion).putInt(this.busyTimeOut).putInt(this.leaseTimeout);
     }
 
     public int getSipVersion() {
@@ -27,42 +27,38 @@ package net.tammon.sip.packets;
 
 import net.tammon.sip.exceptions.SipInternalException;
 
-import java.io.DataInput;
-import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public class ConnectResponse extends AbstractPacket implements Response {
 
-    private static final int messageType = 64;
+    static final int messageType = 64;
     private int sipVersion, busyTimeout, leaseTimeout, noSupportedMessageTypes;
     private int[] supportedMessageTypes;
 
     @Override
     public void setData(byte[] rawData) {
+        this.setData(ByteBuffer.wrap(rawData).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    @Override
+    public void setData(ByteBuffer rawData) {
         try {
             this.head = new Head(rawData);
-            this.setBodyData(Arrays.copyOfRange(rawData, this.head.getMsgLength(), rawData.length - 1));
-        } catch (IOException e) {
+            this.setBodyData(rawData, rawData.position() + Head.LENGTH);
+        } catch (IndexOutOfBoundsException e) {
             throw new SipInternalException("Cannot set data of received S/IP packets", e);
         }
     }
 
-    private void setBodyData(byte[] rawBodyData) throws IllegalArgumentException, IOException {
-
-        DataInput data = DataStreamFactory.getLittleEndianDataInputStream(rawBodyData);
-
-        this.sipVersion = data.readInt();
-        this.busyTimeout = data.readInt();
-        this.leaseTimeout = data.readInt();
-        this.noSupportedMessageTypes = data.readInt();
+    private void setBodyData(ByteBuffer rawData, int bodyPosition) {
+        this.sipVersion = rawData.getInt(bodyPosition);
+        this.busyTimeout = rawData.getInt(bodyPosition + 4);
+        this.leaseTimeout = rawData.getInt(bodyPosition + 8);
+        this.noSupportedMessageTypes = rawData.getInt(bodyPosition + 12);
         this.supportedMessageTypes = new int[noSupportedMessageTypes];
-        for (int i = 0; i < noSupportedMessageTypes; i++) {
-            try {
-                this.supportedMessageTypes[i] = data.readInt();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        for (int i = 0; i < noSupportedMessageTypes; i++)
+            this.supportedMessageTypes[i] = rawData.getInt(bodyPosition + 16 + 4 * i);
     }
 
     @Override
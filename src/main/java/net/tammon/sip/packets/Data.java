@@ -29,6 +29,14 @@ import net.tammon.sip.exceptions.IllegalTypeConversionException;
 import net.tammon.sip.exceptions.TypeNotSupportedException;
 
 import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
@@ -37,6 +45,15 @@ import java.util.List;
  */
 public final class Data {
 
+    // powers of ten which are exact in float, so a division by them is rounded like Float.parseFloat
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+    // powers of ten for all decimal point positions (4 bit), all of them are exact in double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+    private static final int MAX_EXACT_FLOAT_INTEGER = 1 << 24;
+    private static final long MAX_EXACT_DOUBLE_INTEGER = 1L << 53;
+
     private final DataAttribute dataAttribute;
     private final byte[] rawData;
 
@@ -51,6 +68,111 @@ public final class Data {
         this.dataAttribute = dataAttribute;
     }
 
+    /**
+     * Encodes a value as it is written to a parameter with the given data attribute. Numbers are written as
+     * fixed point numbers with the decimal point position of the data attribute and are not rounded. Lists take
+     * arrays of numbers. Strings are written to string and idn parameters. Byte arrays and {@link Data} are
+     * written unchanged.
+     *
+     * @param value         the value to be written
+     * @param dataAttribute the data attribute of the parameter
+     * @return the encoded data
+     * @throws IllegalTypeConversionException if the value does not match the data attribute or does not fit into
+     *                                        the data length or decimal places of the parameter
+     * @throws TypeNotSupportedException      if the display format of the parameter cannot be encoded yet
+     */
+    public static Data encode(Object value, DataAttribute dataAttribute)
+            throws IllegalTypeConversionException, TypeNotSupportedException {
+        if (value instanceof Data) return (Data) value;
+        if (value instanceof byte[]) return new Data((byte[]) value, dataAttribute);
+        if (value instanceof String) return encode((String) value, dataAttribute);
+        if (value instanceof Number && !dataAttribute.isList())
+            return encodeNumbers(dataAttribute, toBigDecimal((Number) value));
+        if (value instanceof long[] && dataAttribute.isList()) {
+            long[] values = (long[]) value;
+            BigDecimal[] numbers = new BigDecimal[values.length];
+            for (int i = 0; i < values.length; i++) numbers[i] = BigDecimal.valueOf(values[i]);
+            return encodeNumbers(dataAttribute, numbers);
+        }
+        if (value instanceof double[] && dataAttribute.isList()) {
+            double[] values = (double[]) value;
+            BigDecimal[] numbers = new BigDecimal[values.length];
+            for (int i = 0; i < values.length; i++) numbers[i] = BigDecimal.valueOf(values[i]);
+            return encodeNumbers(dataAttribute, numbers);
+        }
+        if (value instanceof BigDecimal[] && dataAttribute.isList())
+            return encodeNumbers(dataAttribute, (BigDecimal[]) value);
+        throw new IllegalTypeConversionException(value.getClass(), dataAttribute.getJavaType());
+    }
+
+    private static Data encode(String value, DataAttribute dataAttribute) throws IllegalTypeConversionException {
+        switch (dataAttribute.getDisplayFormat()) {
+            case String:
+                return new Data(value.getBytes(StandardCharsets.UTF_8), dataAttribute);
+            case IDN:
+                if (dataAttribute.isList()) break;
+                try {
+                    return new Data(Idn.getIdnAsByteArray(value), dataAttribute);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalTypeConversionException(value + " is no valid idn", e);
+                }
+        }
+        throw new IllegalTypeConversionException(String.class, dataAttribute.getJavaType());
+    }
+
+    private static BigDecimal toBigDecimal(Number value) {
+        if (value instanceof BigDecimal) return (BigDecimal) value;
+        if (value instanceof BigInteger) return new BigDecimal((BigInteger) value);
+        // the shortest decimal representation, so 0.1 is written as 0.1 and not as its binary approximation
+        if (value instanceof Float) return new BigDecimal(value.toString());
+        if (value instanceof Double) return BigDecimal.valueOf(value.doubleValue());
+        return BigDecimal.valueOf(value.longValue());
+    }
+
+    private static Data encodeNumbers(DataAttribute dataAttribute, BigDecimal... values)
+            throws IllegalTypeConversionException, TypeNotSupportedException {
+        DataAttribute.DisplayFormat displayFormat = dataAttribute.getDisplayFormat();
+        if (displayFormat == DataAttribute.DisplayFormat.Float)
+            throw new TypeNotSupportedException("Display format float is currently not supported");
+        if (!displayFormat.equalsAny(DataAttribute.DisplayFormat.SignedDecimal, DataAttribute.DisplayFormat.UnsignedDecimal,
+                DataAttribute.DisplayFormat.HexaDecimal, DataAttribute.DisplayFormat.Binary))
+            throw new IllegalTypeConversionException(BigDecimal.class, dataAttribute.getJavaType());
+
+        boolean signed = displayFormat == DataAttribute.DisplayFormat.SignedDecimal;
+        int decimalPlaces = signed || displayFormat == DataAttribute.DisplayFormat.UnsignedDecimal
+                ? dataAttribute.getDecimalPointPosition() : 0;
+        int length = dataAttribute.getDataLength().getValue();
+        ByteBuffer buffer = ByteBuffer.allocate(length * values.length).order(ByteOrder.LITTLE_ENDIAN);
+        for (BigDecimal value : values) {
+            BigInteger fixedPointNumber;
+            try {
+                fixedPointNumber = value.setScale(decimalPlaces).unscaledValue();
+            } catch (ArithmeticException e) {
+                throw new IllegalTypeConversionException(value + " cannot be written with " + decimalPlaces
+                        + " decimal places without rounding", e);
+            }
+            if (signed ? fixedPointNumber.bitLength() >= length * 8
+                    : fixedPointNumber.signum() < 0 || fixedPointNumber.bitLength() > length * 8)
+                throw new IllegalTypeConversionException(value + " is out of range of a " + length + " byte "
+                        + (signed ? "signed" : "unsigned") + " parameter");
+            long number = fixedPointNumber.longValue();
+            switch (dataAttribute.getDataLength()) {
+                case oneByte:
+                    buffer.put((byte) number);
+                    break;
+                case twoBytes:
+                    buffer.putShort((short) number);
+                    break;
+                case fourBytes:
+                    buffer.putInt((int) number);
+                    break;
+                default:
+                    buffer.putLong(number);
+            }
+        }
+        return new Data(buffer.array(), dataAttribute);
+    }
+
     /**
      * Returns a little endian byte array of the given numbers
      *
@@ -119,30 +241,6 @@ public final class Data {
         return number;
     }
 
-    private static int[] convertToIntArray(short[] shorts) {
-        int[] output = new int[shorts.length];
-        for (int i = 0; i < shorts.length; i++) output[i] = shorts[i];
-        return output;
-    }
-
-    private static long[] convertToLongArray(int[] ints) {
-        long[] output = new long[ints.length];
-        for (int i = 0; i < ints.length; i++) output[i] = ints[i];
-        return output;
-    }
-
-    private static double[] convertToDoubleArray(float[] floats) {
-        double[] output = new double[floats.length];
-        for (int i = 0; i < floats.length; i++) output[i] = floats[i];
-        return output;
-    }
-
-    private static short[] convertToShortArray(byte[] bytes) {
-        short[] output = new short[bytes.length];
-        for (int i = 0; i < bytes.length; i++) output[i] = bytes[i];
-        return output;
-    }
-
     public static byte parseUnsignedByte(String s) {
         int number = Integer.parseInt(s);
         number = number > 127 ? number - 256 : number;
@@ -247,12 +345,39 @@ public final class Data {
         throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), float.class);
     }
 
-    private float getDataAsFloatWithDecPoint(int rawNumber) throws IOException {
-        String floatString = Data.addZerosIfNeeded(Integer.toString(rawNumber), this.dataAttribute.getDecimalPointPosition());
-        return Float.parseFloat(
-                new StringBuilder(floatString)
-                        .insert(floatString.length() - this.dataAttribute.getDecimalPointPosition(), '.')
-                        .toString());
+    private float getDataAsFloatWithDecPoint(int rawNumber) {
+        return Data.scaleToFloat(rawNumber, this.dataAttribute.getDecimalPointPosition());
+    }
+
+    /**
+     * Shifts the decimal point of a fixed point number. The result is the float nearest to the decimal number,
+     * the same as parsing the decimal number as String.
+     *
+     * @param rawNumber            the fixed point number without decimal point
+     * @param decimalPointPosition number of decimal places of the number
+     * @return the number as float
+     */
+    static float scaleToFloat(int rawNumber, int decimalPointPosition) {
+        // a division of two exact operands is rounded correctly
+        if (decimalPointPosition < FLOAT_POWERS_OF_TEN.length
+                && rawNumber >= -MAX_EXACT_FLOAT_INTEGER && rawNumber <= MAX_EXACT_FLOAT_INTEGER)
+            return rawNumber / FLOAT_POWERS_OF_TEN[decimalPointPosition];
+        return BigDecimal.valueOf(rawNumber, decimalPointPosition).floatValue();
+    }
+
+    /**
+     * Shifts the decimal point of a fixed point number. The result is the double nearest to the decimal number,
+     * the same as parsing the decimal number as String.
+     *
+     * @param rawNumber            the fixed point number without decimal point
+     * @param decimalPointPosition number of decimal places of the number
+     * @return the number as double
+     */
+    static double scaleToDouble(long rawNumber, int decimalPointPosition) {
+        // a division of two exact operands is rounded correctly
+        if (rawNumber >= -MAX_EXACT_DOUBLE_INTEGER && rawNumber <= MAX_EXACT_DOUBLE_INTEGER)
+            return rawNumber / POWERS_OF_TEN[decimalPointPosition];
+        return BigDecimal.valueOf(rawNumber, decimalPointPosition).doubleValue();
     }
 
     /**
@@ -281,12 +406,8 @@ public final class Data {
         throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), double.class);
     }
 
-    private double getDataAsDoubleWithDecPoint(long rawNumber) throws IOException {
-        String doubleString = Data.addZerosIfNeeded(Long.toString(rawNumber), this.dataAttribute.getDecimalPointPosition());
-        return Double.parseDouble(
-                new StringBuilder(doubleString)
-                        .insert(doubleString.length() - this.dataAttribute.getDecimalPointPosition(), '.')
-                        .toString());
+    private double getDataAsDoubleWithDecPoint(long rawNumber) {
+        return Data.scaleToDouble(rawNumber, this.dataAttribute.getDecimalPointPosition());
     }
 
     /**
@@ -327,20 +448,32 @@ public final class Data {
      * @throws IOException                    if a problem occurs while reading the raw data stream
      */
     public short[] asShortArray() throws IllegalTypeConversionException, IOException {
-        if (this.dataAttribute.getJavaType().equals(short[].class)) return this.getDataAsShortArray();
-        throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), short[].class);
+        short[] output = new short[this.getElementCount()];
+        this.decodeInto(output, 0);
+        return output;
     }
 
-    private short[] getDataAsShortArray() throws IOException {
-        DataInput data = DataStreamFactory.getLittleEndianDataInputStream(this.rawData);
-        short[] output = new short[this.rawData.length / this.dataAttribute.getDataLength().getValue()];
-
-        if (this.isSignedDecimal())
-            for (int i = 0; i < output.length; i++) output[i] = data.readShort();
-        else
-            for (int i = 0; i < output.length; i++) output[i] = (short) Byte.toUnsignedInt(data.readByte());
-
-        return output;
+    /**
+     * Converts the raw data of the Data object to shorts and writes them into the given array
+     *
+     * @param destination array the data is written to
+     * @param offset      index of the destination array the first element is written to
+     * @return the number of written elements
+     * @throws IllegalTypeConversionException if the data has a type that is not compatible to short array
+     * @throws IndexOutOfBoundsException      if the destination array is too small
+     */
+    public int decodeInto(short[] destination, int offset) throws IllegalTypeConversionException {
+        if (!this.dataAttribute.getJavaType().equals(short[].class))
+            throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), short[].class);
+        int count = this.checkDestination(destination.length, offset);
+        if (this.dataAttribute.getDataLength() == DataAttribute.DataLength.oneByte) {
+            boolean signed = this.isSignedDecimal();
+            for (int i = 0; i < count; i++)
+                destination[offset + i] = (short) (signed ? this.rawData[i] : this.rawData[i] & 0xFF);
+        } else {
+            this.getLittleEndianBuffer().asShortBuffer().get(destination, offset, count);
+        }
+        return count;
     }
 
     /**
@@ -351,58 +484,95 @@ public final class Data {
      * @throws IOException                    if a problem occurs while reading the raw data stream
      */
     public int[] asIntArray() throws IllegalTypeConversionException, IOException {
-        if (this.dataAttribute.getJavaType().equals(short[].class)) {
-            short[] shortArray = this.getDataAsShortArray();
-            int[] output = new int[shortArray.length];
-            for (int i = 0; i < shortArray.length; i++) output[i] = shortArray[i];
-            return output;
-        }
-        if (this.dataAttribute.getJavaType().equals(int[].class)) return this.getDataAsIntArray();
-        throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), int[].class);
+        int[] output = new int[this.getElementCount()];
+        this.decodeInto(output, 0);
+        return output;
     }
 
-    private int[] getDataAsIntArray() throws IOException {
-        DataInput data = DataStreamFactory.getLittleEndianDataInputStream(this.rawData);
-        int[] output = new int[this.rawData.length / this.dataAttribute.getDataLength().getValue()];
-
-        if (this.isSignedDecimal())
-            for (int i = 0; i < output.length; i++) output[i] = data.readInt();
-        else
-            for (int i = 0; i < output.length; i++) output[i] = Short.toUnsignedInt(data.readShort());
-
-        return output;
+    /**
+     * Converts the raw data of the Data object to ints and writes them into the given array
+     *
+     * @param destination array the data is written to
+     * @param offset      index of the destination array the first element is written to
+     * @return the number of written elements
+     * @throws IllegalTypeConversionException if the data has a type that is not compatible to int array
+     * @throws IndexOutOfBoundsException      if the destination array is too small
+     */
+    public int decodeInto(int[] destination, int offset) throws IllegalTypeConversionException {
+        if (!this.dataAttribute.getJavaType().equals(short[].class) && !this.dataAttribute.getJavaType().equals(int[].class))
+            throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), int[].class);
+        int count = this.checkDestination(destination.length, offset);
+        boolean signed = this.isSignedDecimal();
+        switch (this.dataAttribute.getDataLength()) {
+            case oneByte:
+                for (int i = 0; i < count; i++)
+                    destination[offset + i] = signed ? this.rawData[i] : this.rawData[i] & 0xFF;
+                break;
+            case twoBytes:
+                ShortBuffer shorts = this.getLittleEndianBuffer().asShortBuffer();
+                for (int i = 0; i < count; i++)
+                    destination[offset + i] = signed ? shorts.get(i) : shorts.get(i) & 0xFFFF;
+                break;
+            default:
+                this.getLittleEndianBuffer().asIntBuffer().get(destination, offset, count);
+        }
+        return count;
     }
 
     /**
-     * Converts the raw data of the Data object to type int
+     * Converts the raw data of the Data object to type long array
      *
-     * @return the converted data to int
+     * @return the converted data to long array
      * @throws IllegalTypeConversionException if the data has a type that is not compatible to the return type of this function
      * @throws IOException                    if a problem occurs while reading the raw data stream
      */
     public long[] asLongArray() throws IllegalTypeConversionException, IOException {
-        if (this.dataAttribute.getJavaType().equals(short[].class)) {
-            short[] shortArray = this.getDataAsShortArray();
-            long[] output = new long[shortArray.length];
-            for (int i = 0; i < shortArray.length; i++) output[i] = shortArray[i];
-            return output;
-        }
-        if (this.dataAttribute.getJavaType().equals(int[].class))
-            return Arrays.stream(this.getDataAsIntArray()).mapToLong(i -> i).toArray();
-        if (this.dataAttribute.getJavaType().equals(long[].class)) return this.getDataAsLongArray();
-        throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), long[].class);
+        long[] output = new long[this.getElementCount()];
+        this.decodeInto(output, 0);
+        return output;
     }
 
-    private long[] getDataAsLongArray() throws IOException {
-        DataInput data = DataStreamFactory.getLittleEndianDataInputStream(this.rawData);
-        long[] output = new long[this.rawData.length / this.dataAttribute.getDataLength().getValue()];
-
-        if (this.isSignedDecimal())
-            for (int i = 0; i < output.length; i++) output[i] = data.readLong();
-        else
-            for (int i = 0; i < output.length; i++) output[i] = Integer.toUnsignedLong(data.readInt());
+    /**
+     * Converts the raw data of the Data object to longs and writes them into the given array
+     *
+     * @param destination array the data is written to
+     * @param offset      index of the destination array the first element is written to
+     * @return the number of written elements
+     * @throws IllegalTypeConversionException if the data has a type that is not compatible to long array
+     * @throws IndexOutOfBoundsException      if the destination array is too small
+     */
+    public int decodeInto(long[] destination, int offset) throws IllegalTypeConversionException {
+        if (!this.dataAttribute.getJavaType().equals(short[].class) && !this.dataAttribute.getJavaType().equals(int[].class)
+                && !this.dataAttribute.getJavaType().equals(long[].class))
+            throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), long[].class);
+        int count = this.checkDestination(destination.length, offset);
+        this.decodeFixedPointNumbers(destination, offset, count);
+        return count;
+    }
 
-        return output;
+    /**
+     * Decodes the elements as integers of their data length, signed or unsigned depending on the display format
+     */
+    private void decodeFixedPointNumbers(long[] destination, int offset, int count) {
+        boolean signed = this.isSignedDecimal();
+        switch (this.dataAttribute.getDataLength()) {
+            case oneByte:
+                for (int i = 0; i < count; i++)
+                    destination[offset + i] = signed ? this.rawData[i] : this.rawData[i] & 0xFF;
+                break;
+            case twoBytes:
+                ShortBuffer shorts = this.getLittleEndianBuffer().asShortBuffer();
+                for (int i = 0; i < count; i++)
+                    destination[offset + i] = signed ? shorts.get(i) : shorts.get(i) & 0xFFFF;
+                break;
+            case fourBytes:
+                IntBuffer ints = this.getLittleEndianBuffer().asIntBuffer();
+                for (int i = 0; i < count; i++)
+                    destination[offset + i] = signed ? ints.get(i) : ints.get(i) & 0xFFFFFFFFL;
+                break;
+            default:
+                this.getLittleEndianBuffer().asLongBuffer().get(destination, offset, count);
+        }
     }
 
     /**
@@ -413,79 +583,179 @@ public final class Data {
      * @throws IOException                    if a problem occurs while reading the raw data stream
      */
     public float[] asFloatArray() throws IllegalTypeConversionException, IOException, TypeNotSupportedException {
-        if (this.dataAttribute.getJavaType().equals(float[].class)) {
-            switch (this.dataAttribute.getDataLength()) {
-                case oneByte:
-                    return this.dataAttribute.getDisplayFormat().equals(DataAttribute.DisplayFormat.UnsignedDecimal)
-                            ? this.getDataAsFloatArrayWithDecPoint(
-                            Data.convertToIntArray(this.getDataAsShortArray()))
-                            : this.getDataAsFloatArrayWithDecPoint(
-                            Data.convertToIntArray(
-                                    Data.convertToShortArray(this.getRawData())));
-                case twoBytes:
-                    return this.dataAttribute.getDisplayFormat().equals(DataAttribute.DisplayFormat.UnsignedDecimal)
-                            ? this.getDataAsFloatArrayWithDecPoint(this.getDataAsIntArray())
-                            : this.getDataAsFloatArrayWithDecPoint(
-                            Data.convertToIntArray(this.getDataAsShortArray()));
-                default:
-                    throw new TypeNotSupportedException("Java data type of data attribute does not match the criteria for float array. This is probably due to wrong interpretation of the java type in the data attribute");
-            }
-        }
-        throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), float[].class);
+        float[] output = new float[this.getElementCount()];
+        this.decodeInto(output, 0);
+        return output;
     }
 
-    private float[] getDataAsFloatArrayWithDecPoint(int[] intArray) throws IOException {
+    /**
+     * Converts the raw data of the Data object to floats and writes them into the given array
+     *
+     * @param destination array the data is written to
+     * @param offset      index of the destination array the first element is written to
+     * @return the number of written elements
+     * @throws IllegalTypeConversionException if the data has a type that is not compatible to float array
+     * @throws TypeNotSupportedException      if the data length does not match the criteria for float array
+     * @throws IndexOutOfBoundsException      if the destination array is too small
+     */
+    public int decodeInto(float[] destination, int offset) throws IllegalTypeConversionException, TypeNotSupportedException {
+        if (!this.dataAttribute.getJavaType().equals(float[].class))
+            throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), float[].class);
+        int count = this.checkDestination(destination.length, offset);
         int decPoint = this.dataAttribute.getDecimalPointPosition();
-        float[] output = new float[intArray.length];
-        for (int i = 0; i < output.length; i++) {
-            String floatString = Data.addZerosIfNeeded(Integer.toString(intArray[i]), this.dataAttribute.getDecimalPointPosition());
-            output[i] = Float.parseFloat(
-                    new StringBuilder(floatString)
-                            .insert(floatString.length() - decPoint, '.')
-                            .toString());
+        boolean signed = this.isSignedDecimal();
+        switch (this.dataAttribute.getDataLength()) {
+            case oneByte:
+                for (int i = 0; i < count; i++)
+                    destination[offset + i] = Data.scaleToFloat(signed ? this.rawData[i] : this.rawData[i] & 0xFF, decPoint);
+                break;
+            case twoBytes:
+                ShortBuffer shorts = this.getLittleEndianBuffer().asShortBuffer();
+                for (int i = 0; i < count; i++)
+                    destination[offset + i] = Data.scaleToFloat(signed ? shorts.get(i) : shorts.get(i) & 0xFFFF, decPoint);
+                break;
+            default:
+                throw new TypeNotSupportedException("Java data type of data attribute does not match the criteria for float array. This is probably due to wrong interpretation of the java type in the data attribute");
         }
-        return output;
+        return count;
     }
 
     /**
-     * Converts the raw data of the Data object to type long
+     * Converts the raw data of the Data object to type double array
      *
-     * @return the converted data to long
+     * @return the converted data to double array
      * @throws IllegalTypeConversionException if the data has a type that is not compatible to the return type of this function
      * @throws IOException                    if a problem occurs while reading the raw data stream
      */
     public double[] asDoubleArray() throws IllegalTypeConversionException, IOException, TypeNotSupportedException {
-        if (this.dataAttribute.getJavaType().equals(float[].class))
-            return Data.convertToDoubleArray(this.asFloatArray());
+        double[] output = new double[this.getElementCount()];
+        this.decodeInto(output, 0);
+        return output;
+    }
+
+    /**
+     * Converts the raw data of the Data object to doubles and writes them into the given array. Data which
+     * fits into floats is converted to floats first, like {@link #asDoubleArray()} does.
+     *
+     * @param destination array the data is written to
+     * @param offset      index of the destination array the first element is written to
+     * @return the number of written elements
+     * @throws IllegalTypeConversionException if the data has a type that is not compatible to double array
+     * @throws TypeNotSupportedException      if the display format or data length is not supported
+     * @throws IndexOutOfBoundsException      if the destination array is too small
+     */
+    public int decodeInto(double[] destination, int offset) throws IllegalTypeConversionException, TypeNotSupportedException {
+        if (this.dataAttribute.getJavaType().equals(float[].class)) {
+            int count = this.checkDestination(destination.length, offset);
+            int decPoint = this.dataAttribute.getDecimalPointPosition();
+            boolean signed = this.isSignedDecimal();
+            switch (this.dataAttribute.getDataLength()) {
+                case oneByte:
+                    for (int i = 0; i < count; i++)
+                        destination[offset + i] = Data.scaleToFloat(signed ? this.rawData[i] : this.rawData[i] & 0xFF, decPoint);
+                    break;
+                case twoBytes:
+                    ShortBuffer shorts = this.getLittleEndianBuffer().asShortBuffer();
+                    for (int i = 0; i < count; i++)
+                        destination[offset + i] = Data.scaleToFloat(signed ? shorts.get(i) : shorts.get(i) & 0xFFFF, decPoint);
+                    break;
+                default:
+                    throw new TypeNotSupportedException("Java data type of data attribute does not match the criteria for float array. This is probably due to wrong interpretation of the java type in the data attribute");
+            }
+            return count;
+        }
         if (this.dataAttribute.getJavaType().equals(double[].class)) {
             if (this.dataAttribute.getDisplayFormat().equals(DataAttribute.DisplayFormat.Float))
                 throw new TypeNotSupportedException("Display format float is currently not supported");
+            int count = this.checkDestination(destination.length, offset);
+            int decPoint = this.dataAttribute.getDecimalPointPosition();
+            boolean signed = this.isSignedDecimal();
             switch (this.dataAttribute.getDataLength()) {
                 case fourBytes:
-                    return this.dataAttribute.getDisplayFormat().equals(DataAttribute.DisplayFormat.UnsignedDecimal)
-                            ? this.getDataAsDoubleArrayWithDecPoint(this.getDataAsLongArray())
-                            : this.getDataAsDoubleArrayWithDecPoint(
-                            Data.convertToLongArray(this.getDataAsIntArray()));
+                    IntBuffer ints = this.getLittleEndianBuffer().asIntBuffer();
+                    for (int i = 0; i < count; i++)
+                        destination[offset + i] = Data.scaleToDouble(signed ? ints.get(i) : ints.get(i) & 0xFFFFFFFFL, decPoint);
+                    break;
                 case eightBytes:
-                    return this.getDataAsDoubleArrayWithDecPoint(this.getDataAsLongArray());
+                    LongBuffer longs = this.getLittleEndianBuffer().asLongBuffer();
+                    for (int i = 0; i < count; i++)
+                        destination[offset + i] = Data.scaleToDouble(longs.get(i), decPoint);
+                    break;
                 default:
                     throw new TypeNotSupportedException("Java data type of data attribute does not match the criteria for float array. This is probably due to wrong interpretation of the java type in the data attribute");
             }
+            return count;
         }
         throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), double[].class);
     }
 
-    private double[] getDataAsDoubleArrayWithDecPoint(long[] longArray) throws IOException {
-        int decPoint = this.dataAttribute.getDecimalPointPosition();
-        double[] output = new double[longArray.length];
-        for (int i = 0; i < output.length; i++) {
-            String floatString = Data.addZerosIfNeeded(Long.toString(longArray[i]), this.dataAttribute.getDecimalPointPosition());
-            output[i] = Float.parseFloat(
-                    new StringBuilder(floatString)
-                            .insert(floatString.length() - decPoint, '.')
-                            .toString());
+    /**
+     * Converts the raw data of a decimal Data object to an exact decimal number
+     *
+     * @return the converted data with the decimal places of the data attribute
+     * @throws IllegalTypeConversionException if the data is no single decimal number
+     * @throws TypeNotSupportedException      if the data is an eight byte unsigned decimal
+     * @throws IOException                    if a problem occurs while reading the raw data stream
+     */
+    public BigDecimal asBigDecimal() throws IllegalTypeConversionException, TypeNotSupportedException, IOException {
+        if (this.isDecimal() && !this.isList())
+            return BigDecimal.valueOf(this.getDataAsFixedPointNumber(), this.dataAttribute.getDecimalPointPosition());
+        throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), BigDecimal.class);
+    }
+
+    /**
+     * Converts the raw data of a decimal list Data object to exact decimal numbers
+     *
+     * @return the converted data with the decimal places of the data attribute
+     * @throws IllegalTypeConversionException if the data is no list of decimal numbers
+     * @throws TypeNotSupportedException      if the data is a list of eight byte unsigned decimals
+     * @throws IOException                    if a problem occurs while reading the raw data stream
+     */
+    public BigDecimal[] asBigDecimalArray() throws IllegalTypeConversionException, TypeNotSupportedException, IOException {
+        if (this.isDecimal() && this.isList()) {
+            if (!this.isSignedDecimal() && this.dataAttribute.getDataLength() == DataAttribute.DataLength.eightBytes)
+                throw new TypeNotSupportedException("eight byte unsigned decimal is currently not supported by this library! Sorry...");
+            long[] fixedPointNumbers = new long[this.getElementCount()];
+            this.decodeFixedPointNumbers(fixedPointNumbers, 0, fixedPointNumbers.length);
+            BigDecimal[] output = new BigDecimal[fixedPointNumbers.length];
+            for (int i = 0; i < output.length; i++)
+                output[i] = BigDecimal.valueOf(fixedPointNumbers[i], this.dataAttribute.getDecimalPointPosition());
+            return output;
         }
-        return output;
+        throw new IllegalTypeConversionException(this.dataAttribute.getJavaType(), BigDecimal[].class);
+    }
+
+    private long getDataAsFixedPointNumber()
+            throws IllegalTypeConversionException, IOException, TypeNotSupportedException {
+        boolean unsigned = !this.isSignedDecimal();
+        switch (this.dataAttribute.getDataLength()) {
+            case oneByte:
+                return unsigned ? this.getDataAsShort() : this.getDataAsByte();
+            case twoBytes:
+                return unsigned ? this.getDataAsInt() : this.getDataAsShort();
+            case fourBytes:
+                return unsigned ? this.getDataAsLong() : this.getDataAsInt();
+            default:
+                if (unsigned)
+                    throw new TypeNotSupportedException("eight byte unsigned decimal is currently not supported by this library! Sorry...");
+                return this.getDataAsLong();
+        }
+    }
+
+    private int getElementCount() {
+        return this.rawData.length / this.dataAttribute.getDataLength().getValue();
+    }
+
+    private int checkDestination(int destinationLength, int offset) {
+        int count = this.getElementCount();
+        if (offset < 0 || offset > destinationLength - count)
+            throw new IndexOutOfBoundsException("Cannot write " + count + " elements at offset " + offset
+                    + " into an array of length " + destinationLength);
+        return count;
+    }
+
+    private ByteBuffer getLittleEndianBuffer() {
+        return ByteBuffer.wrap(this.rawData).order(ByteOrder.LITTLE_ENDIAN);
     }
 
     /**
@@ -494,19 +764,10 @@ public final class Data {
      * @return the converted data to String array
      */
     public String[] asStringArray() throws IOException {
-      try (ByteArrayInputStream in = new ByteArrayInputStream(this.rawData)) {
-        try (DataInputStream data = new DataInputStream(in)) {
-          String[] output = new String[this.rawData.length / 4];
-          byte[] buffer = new byte[4];
-  
-          for (int i = 0; i < output.length; i++) {
-            data.read(buffer);
-            output[i] = (new Idn(buffer)).getIdn();
-          }
-  
-          return output;
-        }
-      }
+        IntBuffer eIdns = this.getLittleEndianBuffer().asIntBuffer();
+        String[] output = new String[eIdns.remaining()];
+        for (int i = 0; i < output.length; i++) output[i] = Idn.format(eIdns.get(i));
+        return output;
     }
 
     /**
@@ -567,8 +828,7 @@ public final class Data {
                     case String:
                       return new String(this.rawData, 0, this.rawData.length, "UTF-8");
                     case IDN:
-                      byte[] buffer = new byte[4];
-                      return (new Idn(buffer)).getIdn();
+                      return Idn.format(this.getLittleEndianBuffer().getInt());
                     default:
                       throw new TypeNotSupportedException(
                           "Java data type of data attribute does not match the criteria for String. This is probably due to wrong interpretation of the java type in the data attribute");
@@ -586,6 +846,11 @@ public final class Data {
         return this.dataAttribute.getDisplayFormat().equals(DataAttribute.DisplayFormat.SignedDecimal);
     }
 
+    private boolean isDecimal() {
+        return this.isSignedDecimal()
+                || this.dataAttribute.getDisplayFormat().equals(DataAttribute.DisplayFormat.UnsignedDecimal);
+    }
+
     /**
      * Returns the raw data of the packet as byte array
      *
@@ -27,14 +27,17 @@ package net.tammon.sip.packets;
 
 import net.tammon.sip.exceptions.TypeNotSupportedException;
 
-import java.io.DataInput;
 import java.io.IOException;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The DataAttribute is send by the drive as a description to the sent data
  */
 public final class DataAttribute {
+    private static final Map<Integer, DataAttribute> decoded = new ConcurrentHashMap<>();
+    private final int rawDataAttribute;
     private final int weight;
     private final DataLength dataLength;
     private final boolean isList;
@@ -50,20 +53,51 @@ public final class DataAttribute {
      * @throws IOException if an I/O error occurs while reading the byte array as DataStream
      */
     public DataAttribute(byte[] rawDataAttribute) throws IOException,TypeNotSupportedException {
-        DataInput data = DataStreamFactory.getLittleEndianDataInputStream(rawDataAttribute);
+        this(DataStreamFactory.getLittleEndianDataInputStream(rawDataAttribute).readInt());
+    }
+
+    /**
+     * creates a new data attribute object
+     * @param rawDataAttribute the data attribute as little endian decoded integer
+     */
+    public DataAttribute(int rawDataAttribute) throws TypeNotSupportedException {
+        this.rawDataAttribute = rawDataAttribute;
         int rawWeight;
-        this.weight = (rawWeight = data.readUnsignedShort()) == 0 ? 1 : rawWeight;
-        byte byteBuffer = data.readByte();
+        this.weight = (rawWeight = rawDataAttribute & 0xFFFF) == 0 ? 1 : rawWeight;
+        int byteBuffer = (rawDataAttribute >> 16) & 0xFF;
         this.dataLength = DataLength.values()[(byteBuffer & 0x3)];
         this.isList = (byteBuffer & 0x4) == 0x4;
         this.isCommand = (byteBuffer & 0x8) == 0x8;
         this.displayFormat = DisplayFormat.values()[(byteBuffer & 0x70) >> 0x4];
-        byteBuffer = data.readByte();
+        byteBuffer = (rawDataAttribute >>> 24) & 0xFF;
         this.decimalPointPosition = (byte)(byteBuffer & 0xF);
         this.rights = (byte)((byteBuffer & 0xF0) >> 0x4);
         this.dataType = getJavaType(displayFormat, dataLength, weight, decimalPointPosition, isList);
     }
 
+    /**
+     * Returns the data attribute of the given raw value. A drive only uses a small set of different data
+     * attributes, so every raw value is decoded once and the data attribute is shared afterwards.
+     * @param rawDataAttribute the data attribute as little endian decoded integer
+     * @return the decoded data attribute
+     */
+    public static DataAttribute valueOf(int rawDataAttribute) throws TypeNotSupportedException {
+        DataAttribute dataAttribute = decoded.get(rawDataAttribute);
+        if (dataAttribute == null) {
+            dataAttribute = new DataAttribute(rawDataAttribute);
+            DataAttribute existing = decoded.putIfAbsent(rawDataAttribute, dataAttribute);
+            if (existing != null) dataAttribute = existing;
+        }
+        return dataAttribute;
+    }
+
+    /**
+     * @return the data attribute as little endian decoded integer as it is sent by the drive
+     */
+    public int getRawDataAttribute() {
+        return rawDataAttribute;
+    }
+
     public int getWeight() {
         return weight;
     }
@@ -174,6 +208,16 @@ public final class DataAttribute {
         throw new IllegalArgumentException("Invalid data length: " + dataLength + ". Current display format: " + displayFormat);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof DataAttribute && ((DataAttribute) o).rawDataAttribute == this.rawDataAttribute;
+    }
+
+    @Override
+    public int hashCode() {
+        return rawDataAttribute;
+    }
+
     @Override
     public String toString() {
         return "weight: " + weight
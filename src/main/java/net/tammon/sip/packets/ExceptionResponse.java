@@ -29,11 +29,12 @@ import net.tammon.sip.exceptions.SipInternalException;
 
 import java.io.DataInput;
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public class ExceptionResponse extends AbstractPacket implements Response {
 
-    private final static int messageType = 67;
+    final static int messageType = 67;
     private short rawCommonErrorCode;
     private int specificErrorCode;
     private CommonErrorCodes commonErrorCode;
@@ -42,12 +43,24 @@ public class ExceptionResponse extends AbstractPacket implements Response {
         this.setData(rawData);
     }
 
+    public ExceptionResponse(ByteBuffer rawData) {
+        this.setData(rawData);
+    }
+
     @Override
     public void setData(byte[] rawData) {
+        this.setData(ByteBuffer.wrap(rawData).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    @Override
+    public void setData(ByteBuffer rawData) {
         try {
             this.head = new Head(rawData);
-            this.setBodyData(Arrays.copyOfRange(rawData, this.head.getMsgLength(), rawData.length - 1));
-        } catch (IOException e) {
+            int bodyPosition = rawData.position() + Head.LENGTH;
+            this.rawCommonErrorCode = rawData.getShort(bodyPosition);
+            this.specificErrorCode = rawData.getInt(bodyPosition + 2);
+            this.commonErrorCode = CommonErrorCodes.values()[this.rawCommonErrorCode - 1];
+        } catch (IndexOutOfBoundsException e) {
             throw new SipInternalException("Cannot set data of received S/IP packets", e);
         }
     }
@@ -27,8 +27,13 @@ package net.tammon.sip.packets;
 
 import java.io.DataInput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public final class Head {
+    /**
+     * length of the S/IP head in bytes (transaction id and message type)
+     */
+    public static final int LENGTH = 8;
     private static int MSG_EXCEPTION = 67;
     private int transactionId;
     private int messageType;
@@ -44,8 +49,19 @@ public final class Head {
         this.messageType = data.readInt();
     }
 
+    /**
+     * Creates a head from the packet at the current position of the given little endian buffer
+     * without changing the position of the buffer
+     *
+     * @param rawData buffer containing the packet
+     */
+    public Head(ByteBuffer rawData) {
+        this.transactionId = rawData.getInt(rawData.position());
+        this.messageType = rawData.getInt(rawData.position() + 4);
+    }
+
     public int getMsgLength() {
-        return this.getDataAsByteArray().length;
+        return LENGTH;
     }
 
     public int getTransactionId() {
@@ -69,4 +85,13 @@ public final class Head {
     public byte[] getDataAsByteArray (){
         return Data.getByteArray(this.transactionId, this.messageType);
     }
+
+    /**
+     * Writes the head to the given little endian buffer
+     *
+     * @param buffer buffer to write to
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(this.transactionId).putInt(this.messageType);
+    }
 }
@@ -25,25 +25,41 @@
 
 package net.tammon.sip.packets;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Holds a SIP Identifier for parameter access.
+ * Holds a SIP Identifier for parameter access. Idns are immutable, the instances returned by {@link #of(String)}
+ * are shared, so an idn which is read cyclically is parsed only once.
  */
-final class Idn {
-    private final byte[] eIdn;
+public final class Idn {
+    /**
+     * maximum length of an idn String, e.g. P-7-4095.255.255
+     */
+    public static final int MAX_LENGTH = 16;
+
+    // bounds the interned idns if an application creates idns from arbitrary input
+    private static final int MAX_INTERNED = 4096;
+    private static final Map<String, Idn> interned = new ConcurrentHashMap<>();
+    private static final int FORMAT_CACHE_BITS = 13;
+    // direct mapped cache of formatted idns, an entry is replaced by the next idn which maps to the same slot
+    private static final FormattedIdn[] formatted = new FormattedIdn[1 << FORMAT_CACHE_BITS];
+
+
+    private final int eIdn;
     private final String idn;
 
     /**
      * creates an SIP Idn Object from an Idn-String
      * @param idn 16-bit or 32-bit idn as String
+     * @throws IllegalArgumentException if the specified String is not a valid Idn
      */
     public Idn(String idn) {
         this.idn = idn;
-        this.eIdn = Idn.getIdnAsByteArray(idn);
+        this.eIdn = Idn.parse(idn);
     }
 
     /**
@@ -51,8 +67,25 @@ final class Idn {
      * @param eIdn 32-bit idn as byte-array
      */
     public Idn(byte[] eIdn) throws IOException {
-        this.eIdn = eIdn;
-        this.idn = getIdnAsString(eIdn);
+        this.eIdn = ByteBuffer.wrap(eIdn).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        this.idn = format(this.eIdn);
+    }
+
+    /**
+     * Returns the idn of the given String. The idn is parsed once and shared by all callers.
+     * @param idn 16-bit or 32-bit idn as String, e.g. S-0-0051 or P-0-1058.0.35
+     * @return the idn
+     * @throws IllegalArgumentException if the specified String is not a valid Idn
+     */
+    public static Idn of(String idn) {
+        Idn handle = interned.get(idn);
+        if (handle != null) return handle;
+        handle = new Idn(idn);
+        if (interned.size() < MAX_INTERNED) {
+            Idn existing = interned.putIfAbsent(idn, handle);
+            if (existing != null) return existing;
+        }
+        return handle;
     }
 
     /**
@@ -62,67 +95,162 @@ final class Idn {
      * @throws IllegalArgumentException if the specified String is not a valid Idn
      */
     static byte[] getIdnAsByteArray(String idn) throws IllegalArgumentException {
-        if (idn.matches("^[SP]-\\d-\\d\\d\\d\\d\\.([1-9]?\\d|1\\d\\d|2[0-4]\\d|25[0-5])\\.([1-9]?\\d|1\\d\\d|2[0-4]\\d|25[0-5])$")) {
-            String idnPointPart = idn.substring(9);
-            String[] idnPointSeparatedParts = idnPointPart.split("\\.");
+        return toByteArray(Idn.parse(idn));
+    }
+
+    /**
+     * Parses an idn String of the form S-0-0051 or P-0-1058.0.35 without regular expressions and
+     * intermediate objects.
+     * @param idn 16-bit or 32-bit idn as String
+     * @return the eIdn as little endian decoded integer
+     * @throws IllegalArgumentException if the specified String is not a valid Idn
+     */
+    static int parse(String idn) throws IllegalArgumentException {
+        int length = idn.length();
+        char type = length >= 8 ? idn.charAt(0) : 0;
+        if ((type != 'S' && type != 'P') || idn.charAt(1) != '-' || idn.charAt(3) != '-'
+                || (length != 8 && (length < 12 || idn.charAt(8) != '.')))
+            throw invalidIdn();
+        // the set has 3 bits and the parameter number 12 bits in the eIdn
+        int set = digit(idn, 2);
+        int parameterNumber = digit(idn, 4) * 1000 + digit(idn, 5) * 100 + digit(idn, 6) * 10 + digit(idn, 7);
+        if (set > 7 || parameterNumber > 4095) throw invalidIdn();
+        int eIdn = (type == 'P' ? 0x8000 : 0) | set << 12 | parameterNumber;
+        if (length == 8) return eIdn;
 
-            byte byte1 = Data.parseUnsignedByte(idnPointSeparatedParts[0]);
-            byte byte2 = Data.parseUnsignedByte(idnPointSeparatedParts[1]);
+        int separator = idn.indexOf('.', 9);
+        if (separator < 0) throw invalidIdn();
+        int structureInstance = parseStructureNumber(idn, 9, separator);
+        int structureElement = parseStructureNumber(idn, separator + 1, length);
+        return eIdn | structureElement << 16 | structureInstance << 24;
+    }
 
-            return Data.concatenate(getIdnAs16BitByteArray(idn),
-                    Data.concatenate(byte2, byte1));
-        } else if (idn.matches("^[SP]-\\d-\\d\\d\\d\\d$")){
-            return Data.concatenate(getIdnAs16BitByteArray(idn),
-                    Data.concatenate((byte) 0, (byte) 0));
-        } else throw new IllegalArgumentException("The specified idn is not a valid drive Parameter");
+    /**
+     * parses a decimal number between 0 and 255 without leading zeros
+     */
+    private static int parseStructureNumber(String idn, int start, int end) {
+        int length = end - start;
+        if (length < 1 || length > 3 || (length > 1 && idn.charAt(start) == '0')) throw invalidIdn();
+        int number = 0;
+        for (int i = start; i < end; i++) number = number * 10 + digit(idn, i);
+        if (number > 255) throw invalidIdn();
+        return number;
     }
 
-    private static byte[] getIdnAs16BitByteArray(String idn) {
-        String idnDashPart = idn.substring(0,8);
-        String[] idnDashSeparatedParts = idnDashPart.split("-");
+    private static int digit(String idn, int index) {
+        char c = idn.charAt(index);
+        if (c < '0' || c > '9') throw invalidIdn();
+        return c - '0';
+    }
 
-        byte byte3 = (byte)((Data.parseUnsignedByte(idnDashSeparatedParts[1]) |
-                ((idnDashSeparatedParts[0].equals("P")) ? (0x01 << 3) : 0x00)) << 4);
-        byte[] parameterNo = Data.getByteArray(Short.parseShort(idnDashSeparatedParts[2]));
+    private static IllegalArgumentException invalidIdn() {
+        return new IllegalArgumentException("The specified idn is not a valid drive Parameter");
+    }
 
-        assert parameterNo != null;
-        byte3 = (byte) (byte3 | parameterNo[1]);
-        byte byte4 = parameterNo[0];
-        return Data.concatenate(byte4, byte3);
+    private static byte[] toByteArray(int eIdn) {
+        return new byte[]{(byte) eIdn, (byte) (eIdn >> 8), (byte) (eIdn >> 16), (byte) (eIdn >> 24)};
     }
 
+    /**
+     * converts a 32-bit eIdn to its String form, e.g. P-0-1058.0.35
+     * @param eIdn 32-bit idn as little endian byte array
+     * @return the idn as String
+     */
     public static String getIdnAsString(byte[] eIdn) throws IOException {
-        DataInputStream data = new DataInputStream(new ByteArrayInputStream(eIdn));
-        byte[] buffer = new byte[4];
-        data.read(buffer);
-        char parType = (buffer[1] & 0x80) == 0x80 ? 'P' : 'S';
-        int num1 = (buffer[1] & 0x70) >> 0x4;
-        short num2 = ByteBuffer.wrap(new byte[]{(byte)(buffer[1] & 0xF), buffer[0]}).getShort();
-        int num3 = buffer[3];
-        int num4 = buffer[2];
-        return (new StringBuilder())
-                .append(parType)
-                .append('-')
-                .append(num1)
-                .append('-')
-                .append(addZerosTillLength(Integer.toString(num2), 4))
-                .append('.')
-                .append(num3)
-                .append('.')
-                .append(num4)
-                .toString();
-    }
-
-    private static String addZerosTillLength(String string, int neededLength){
-        for (int length = string.length(); length < neededLength; length++) string = new StringBuilder(string).insert(0, '0').toString();
-        return string;
+        int value = 0;
+        for (int i = Math.min(eIdn.length, 4) - 1; i >= 0; i--) value = value << 8 | eIdn[i] & 0xFF;
+        return format(value);
+    }
+
+    /**
+     * Converts a 32-bit eIdn to its String form. The Strings are kept in a bounded cache, so decoding the long
+     * idn lists of a drive (e.g. S-0-0017) creates every String only once.
+     * @param eIdn the 32-bit eIdn as little endian decoded integer
+     * @return the idn as String, e.g. P-0-1058.0.35
+     */
+    public static String format(int eIdn) {
+        int slot = (eIdn * 0x9E3779B9) >>> (32 - FORMAT_CACHE_BITS);
+        FormattedIdn cached = formatted[slot];
+        if (cached != null && cached.eIdn == eIdn) return cached.idn;
+        char[] buffer = new char[MAX_LENGTH];
+        String idn = new String(buffer, 0, format(eIdn, buffer, 0));
+        formatted[slot] = new FormattedIdn(eIdn, idn);
+        return idn;
+    }
+
+    /**
+     * Writes the String form of a 32-bit eIdn into the given buffer, so a caller can format many idns with
+     * one reusable buffer
+     * @param eIdn        the 32-bit eIdn as little endian decoded integer
+     * @param destination buffer with at least {@link #MAX_LENGTH} chars behind the offset
+     * @param offset      index of the first char to write
+     * @return the number of written chars
+     */
+    public static int format(int eIdn, char[] destination, int offset) {
+        int position = offset;
+        destination[position++] = (eIdn & 0x8000) != 0 ? 'P' : 'S';
+        destination[position++] = '-';
+        destination[position++] = (char) ('0' + (eIdn >> 12 & 0x7));
+        destination[position++] = '-';
+        int parameterNumber = eIdn & 0xFFF;
+        destination[position++] = (char) ('0' + parameterNumber / 1000);
+        destination[position++] = (char) ('0' + parameterNumber / 100 % 10);
+        destination[position++] = (char) ('0' + parameterNumber / 10 % 10);
+        destination[position++] = (char) ('0' + parameterNumber % 10);
+        destination[position++] = '.';
+        position = formatStructureNumber(eIdn >>> 24, destination, position);
+        destination[position++] = '.';
+        position = formatStructureNumber(eIdn >> 16 & 0xFF, destination, position);
+        return position - offset;
+    }
+
+    private static int formatStructureNumber(int number, char[] destination, int position) {
+        if (number >= 100) destination[position++] = (char) ('0' + number / 100);
+        if (number >= 10) destination[position++] = (char) ('0' + number / 10 % 10);
+        destination[position++] = (char) ('0' + number % 10);
+        return position;
     }
 
     public byte[] getIdnAsByteArray() {
+        return toByteArray(this.eIdn);
+    }
+
+    /**
+     * @return the 32-bit eIdn as little endian decoded integer
+     */
+    public int getEIdn() {
         return eIdn;
     }
 
     public String getIdn() {
         return idn;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Idn && ((Idn) o).eIdn == this.eIdn;
+    }
+
+    @Override
+    public int hashCode() {
+        return eIdn;
+    }
+
+    @Override
+    public String toString() {
+        return idn;
+    }
+
+    /**
+     * An entry of the format cache. Its fields are final, so entries are safely shared between threads.
+     */
+    private static final class FormattedIdn {
+        private final int eIdn;
+        private final String idn;
+
+        private FormattedIdn(int eIdn, String idn) {
+            this.eIdn = eIdn;
+            this.idn = idn;
+        }
+    }
 }
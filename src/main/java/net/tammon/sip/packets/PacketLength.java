@@ -0,0 +1,132 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.tammon.sip.packets;
+
+import net.tammon.sip.exceptions.SipProtocolException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The S/IP head does not carry the length of a packet. This class derives the length of a response
+ * packet from its message type and the length fields of its body, so that responses can be read from a
+ * stream without relying on the segmentation of the underlying TCP connection.
+ */
+public final class PacketLength {
+    /**
+     * upper bound of the length of a response packet. The data of a sercos parameter is limited by its two byte
+     * list length and the name, unit and limits of a description by their two byte length fields, so a valid
+     * response stays far below this bound. It keeps a corrupt length field from allocating a huge buffer.
+     */
+    public static final int MAX_LENGTH = 1 << 20;
+
+    private PacketLength() {
+    }
+
+    /**
+     * Returns the number of bytes the response packet at the current position of the buffer consists of.
+     * If the available bytes between position and limit of the buffer are not sufficient to determine the
+     * full length, the number of bytes needed to determine it is returned instead. Callers therefore read
+     * until the available bytes are at least the returned value and then call this method again.
+     *
+     * @param buffer buffer containing the beginning of a response packet
+     * @return the length of the packet or the number of bytes needed to determine it
+     * @throws SipProtocolException if the message type is unknown or the packet announces an invalid length
+     */
+    public static int getRequiredLength(ByteBuffer buffer) throws SipProtocolException {
+        int position = buffer.position();
+        int available = buffer.remaining();
+        if (available < Head.LENGTH) return Head.LENGTH;
+
+        int messageType = getInt(buffer, position + 4);
+        switch (messageType) {
+            case Pong.messageType:
+            case Busy.messageType:
+            case WriteDataResponse.messageType:
+                return Head.LENGTH;
+            case ExceptionResponse.messageType:
+                return Head.LENGTH + 6;
+            case ConnectResponse.messageType:
+                if (available < Head.LENGTH + 16) return Head.LENGTH + 16;
+                return checkLength(messageType, Head.LENGTH + 16 + 4 * getUnsignedInt(buffer, position + Head.LENGTH + 12));
+            case ReadOnlyDataResponse.messageType:
+                if (available < Head.LENGTH + 8) return Head.LENGTH + 8;
+                return checkLength(messageType, Head.LENGTH + 8 + getUnsignedInt(buffer, position + Head.LENGTH + 4));
+            case ReadDataDescriptionResponse.messageType:
+            case ReadEverythingResponse.messageType:
+                return getDescriptionLength(buffer, position, available, messageType);
+            default:
+                throw new SipProtocolException("Cannot determine the length of S/IP packets of message type " + messageType);
+        }
+    }
+
+    /**
+     * Walks along the length fields of the read data description and read everything bodies. Every field
+     * is only read once the bytes up to it are available.
+     */
+    private static int getDescriptionLength(ByteBuffer buffer, int position, int available, int messageType)
+            throws SipProtocolException {
+        // data status and name length
+        long offset = Head.LENGTH + 2;
+        if (available < offset + 2) return (int) offset + 2;
+        // name, data attribute and unit length
+        offset += 2 + getUnsignedShort(buffer, position + (int) offset) + 4;
+        if (available < offset + 2) return checkLength(messageType, offset + 2);
+        // unit and minimum length
+        offset += 2 + getUnsignedShort(buffer, position + (int) offset);
+        if (available < offset + 2) return checkLength(messageType, offset + 2);
+        // minimum and maximum length
+        offset += 2 + getUnsignedShort(buffer, position + (int) offset);
+        if (available < offset + 2) return checkLength(messageType, offset + 2);
+        // maximum and maximum list length
+        offset += 2 + getUnsignedShort(buffer, position + (int) offset) + 4;
+        if (messageType == ReadDataDescriptionResponse.messageType) return checkLength(messageType, offset);
+        // data length
+        if (available < offset + 4) return checkLength(messageType, offset + 4);
+        return checkLength(messageType, offset + 4 + getUnsignedInt(buffer, position + (int) offset));
+    }
+
+    private static int checkLength(int messageType, long length) throws SipProtocolException {
+        if (length < Head.LENGTH || length > MAX_LENGTH)
+            throw new SipProtocolException("Invalid packet length " + length + " announced by message type " + messageType);
+        return (int) length;
+    }
+
+    private static int getUnsignedShort(ByteBuffer buffer, int index) {
+        short value = buffer.getShort(index);
+        return Short.toUnsignedInt(buffer.order() == ByteOrder.LITTLE_ENDIAN ? value : Short.reverseBytes(value));
+    }
+
+    // length fields are unsigned, a negative int would otherwise shorten the packet
+    private static long getUnsignedInt(ByteBuffer buffer, int index) {
+        return getInt(buffer, index) & 0xFFFFFFFFL;
+    }
+
+    private static int getInt(ByteBuffer buffer, int index) {
+        int value = buffer.getInt(index);
+        return buffer.order() == ByteOrder.LITTLE_ENDIAN ? value : Integer.reverseBytes(value);
+    }
+}
@@ -25,7 +25,9 @@
 
 package net.tammon.sip.packets;
 
-public class Ping extends AbstractPacket implements Request {
+import java.nio.ByteBuffer;
+
+public class Ping extends AbstractRequest {
     private final static int messageType = 65;
 
     public Ping(int transactionId) {
@@ -38,7 +40,12 @@ public class Ping extends AbstractPacket implements Request {
     }
 
     @Override
-    public byte[] getTcpMsgAsByteArray() {
-        return this.head.getDataAsByteArray();
+    public int getTcpMsgLength() {
+        return Head.LENGTH;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        this.head.writeTo(buffer);
     }
 }
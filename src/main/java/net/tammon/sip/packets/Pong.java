@@ -28,9 +28,10 @@ package net.tammon.sip.packets;
 import net.tammon.sip.exceptions.SipInternalException;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class Pong extends AbstractPacket implements Response {
-    private final static int messageType = 66;
+    final static int messageType = 66;
 
     @Override
     public int getMessageType() {
@@ -45,4 +46,9 @@ public class Pong extends AbstractPacket implements Response {
             throw new SipInternalException("Cannot set data of received S/IP packets", e);
         }
     }
+
+    @Override
+    public void setData(ByteBuffer rawData) {
+        this.head = new Head(rawData);
+    }
 }
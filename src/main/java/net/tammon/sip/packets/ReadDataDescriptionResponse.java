@@ -0,0 +1,152 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip.packets;
+
+import net.tammon.sip.exceptions.SipInternalException;
+import net.tammon.sip.exceptions.TypeNotSupportedException;
+
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The response to a {@link ReadDataDescription} request. The body consists of
+ * <pre>
+ * UINT16 data status
+ * UINT16 name length,    name
+ * UINT32 data attribute
+ * UINT16 unit length,    unit
+ * UINT16 minimum length, minimum
+ * UINT16 maximum length, maximum
+ * UINT32 maximum list length
+ * </pre>
+ */
+public class ReadDataDescriptionResponse extends AbstractPacket implements Response {
+
+    final static int messageType = 70;
+    private int dataStatus;
+    private String name;
+    private DataAttribute dataAttribute;
+    private String unit;
+    private Data minimum;
+    private Data maximum;
+    private int maxListLength;
+
+    @Override
+    public int getMessageType() {
+        return messageType;
+    }
+
+    @Override
+    public void setData(byte[] rawData) {
+        this.setData(ByteBuffer.wrap(rawData).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    @Override
+    public void setData(ByteBuffer rawData) {
+        try {
+            this.head = new Head(rawData);
+            ByteBuffer body = rawData.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            ((Buffer) body).position(rawData.position() + Head.LENGTH);
+            this.readBody(body);
+        } catch (TypeNotSupportedException | IndexOutOfBoundsException | BufferUnderflowException
+                | IllegalArgumentException e) {
+            throw new SipInternalException("Cannot set data of received S/IP packets", e);
+        }
+    }
+
+    /**
+     * Reads the description elements of the body
+     *
+     * @param body little endian buffer positioned at the beginning of the body
+     */
+    void readBody(ByteBuffer body) throws TypeNotSupportedException {
+        this.dataStatus = Short.toUnsignedInt(body.getShort());
+        this.name = getString(body, Short.toUnsignedInt(body.getShort()));
+        this.dataAttribute = DataAttribute.valueOf(body.getInt());
+        this.unit = getString(body, Short.toUnsignedInt(body.getShort()));
+        this.minimum = new Data(getBytes(body, Short.toUnsignedInt(body.getShort())), this.dataAttribute);
+        this.maximum = new Data(getBytes(body, Short.toUnsignedInt(body.getShort())), this.dataAttribute);
+        this.maxListLength = body.getInt();
+    }
+
+    static String getString(ByteBuffer buffer, int length) {
+        return new String(getBytes(buffer, length), StandardCharsets.UTF_8);
+    }
+
+    static byte[] getBytes(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return the status of the data as sent by the sercos device
+     */
+    public int getDataStatus() {
+        return dataStatus;
+    }
+
+    /**
+     * @return the name of the parameter
+     */
+    public String getName() {
+        return name;
+    }
+
+    public DataAttribute getDataAttribute() {
+        return dataAttribute;
+    }
+
+    /**
+     * @return the unit of the parameter, empty if it has no unit
+     */
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * @return the minimum input value of the parameter, empty if it has no minimum
+     */
+    public Data getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * @return the maximum input value of the parameter, empty if it has no maximum
+     */
+    public Data getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * @return the maximum length of a list parameter in bytes
+     */
+    public int getMaxListLength() {
+        return maxListLength;
+    }
+}
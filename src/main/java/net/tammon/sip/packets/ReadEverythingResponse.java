@@ -0,0 +1,60 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip.packets;
+
+import net.tammon.sip.exceptions.TypeNotSupportedException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The response to a {@link ReadEverything} request. The body is the body of a
+ * {@link ReadDataDescriptionResponse} followed by the value of the parameter:
+ * <pre>
+ * UINT32 data length,    data
+ * </pre>
+ */
+public class ReadEverythingResponse extends ReadDataDescriptionResponse {
+
+    final static int messageType = 74;
+    private Data data;
+
+    @Override
+    public int getMessageType() {
+        return messageType;
+    }
+
+    @Override
+    void readBody(ByteBuffer body) throws TypeNotSupportedException {
+        super.readBody(body);
+        this.data = new Data(getBytes(body, body.getInt()), this.getDataAttribute());
+    }
+
+    /**
+     * @return the value of the parameter
+     */
+    public Data getData() {
+        return data;
+    }
+}
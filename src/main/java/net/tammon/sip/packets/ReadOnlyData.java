@@ -25,26 +25,16 @@
 
 package net.tammon.sip.packets;
 
-public class ReadOnlyData extends AbstractPacket implements Request {
+public class ReadOnlyData extends AbstractParameterRequest {
 
     private static final int messageType = 71;
-    private final short slaveIndex;
-    private final short slaveExtension;
-    private final Idn idn;
 
     public ReadOnlyData(int transactionId, short slaveIndex, short slaveExtension, String idn) throws IllegalArgumentException {
-        this.head = new Head(transactionId, messageType);
-        this.slaveIndex = slaveIndex;
-        this.slaveExtension = slaveExtension;
-        this.idn = new Idn(idn);
+        super(transactionId, messageType, slaveIndex, slaveExtension, idn);
     }
 
-    @Override
-    public byte[] getTcpMsgAsByteArray() {
-        return Data.concatenate(
-                this.head.getDataAsByteArray(),
-                Data.getByteArray(this.slaveIndex, this.slaveExtension),
-                this.idn.getIdnAsByteArray());
+    public ReadOnlyData(int transactionId, short slaveIndex, short slaveExtension, Idn idn) {
+        super(transactionId, messageType, slaveIndex, slaveExtension, idn);
     }
 
     @Override
@@ -28,36 +28,16 @@ package net.tammon.sip.packets;
 import net.tammon.sip.exceptions.SipInternalException;
 import net.tammon.sip.exceptions.TypeNotSupportedException;
 
-import java.io.DataInput;
-import java.io.FilterInputStream;
-import java.io.IOException;
-import java.io.InvalidClassException;
-import java.util.Arrays;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public class ReadOnlyDataResponse extends AbstractPacket implements Response {
 
-    private final static int messageType = 72;
+    final static int messageType = 72;
     private Data data;
 
-    /**
-     * sets the data of this object's body
-     * @param rawBodyData the raw binary data of the response describing the body
-     * @throws IOException if an I/O error occurs on reading the binary data as DataStream
-     */
-    private void setBodyData(byte[] rawBodyData) throws IOException, TypeNotSupportedException {
-        DataInput data = DataStreamFactory.getLittleEndianDataInputStream(rawBodyData);
-        byte[] buffer = new byte[4];
-        if (data instanceof FilterInputStream)
-            ((FilterInputStream)data).read(buffer);
-        else throw new InvalidClassException("DataInputStream does not extend FilterInputStream. Grabbing data as byte array ist not possible!");
-        DataAttribute dataAttribute = new DataAttribute(buffer);
-
-        int lengthOfData = data.readInt();
-        byte[] rawData = new byte[lengthOfData];
-        ((FilterInputStream)data).read(rawData);
-        this.data = new Data(rawData, dataAttribute);
-    }
-
     /**
      * Gets the messageType of the message
      * @return message Type
@@ -77,10 +57,28 @@ public class ReadOnlyDataResponse extends AbstractPacket implements Response {
 
     @Override
     public void setData(byte[] rawData) {
+        this.setData(ByteBuffer.wrap(rawData).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /**
+     * Sets the data of the packet in the given buffer. Only the value of the parameter is copied
+     * out of the buffer because the {@link Data} outlives the buffer.
+     *
+     * @param rawData buffer containing exactly one packet between its position and its limit
+     */
+    @Override
+    public void setData(ByteBuffer rawData) {
         try {
             this.head = new Head(rawData);
-            this.setBodyData(Arrays.copyOfRange(rawData, this.head.getMsgLength(), rawData.length - 1));
-        } catch (IOException | TypeNotSupportedException e) {
+            int bodyPosition = rawData.position() + Head.LENGTH;
+            DataAttribute dataAttribute = DataAttribute.valueOf(rawData.getInt(bodyPosition));
+            byte[] value = new byte[rawData.getInt(bodyPosition + 4)];
+            int position = rawData.position();
+            ((Buffer) rawData).position(bodyPosition + 8);
+            rawData.get(value);
+            ((Buffer) rawData).position(position);
+            this.data = new Data(value, dataAttribute);
+        } catch (TypeNotSupportedException | IndexOutOfBoundsException | BufferUnderflowException e) {
             throw new SipInternalException("Cannot set data of received S/IP packets", e);
         }
     }
@@ -25,6 +25,20 @@
 
 package net.tammon.sip.packets;
 
+import java.nio.ByteBuffer;
+
 public interface Request extends Packet {
     byte[] getTcpMsgAsByteArray();
+
+    /**
+     * @return the length of the tcp message in bytes
+     */
+    int getTcpMsgLength();
+
+    /**
+     * Writes the tcp message to the given little endian buffer starting at its current position
+     *
+     * @param buffer buffer with at least {@link #getTcpMsgLength()} bytes remaining
+     */
+    void writeTo(ByteBuffer buffer);
 }
@@ -25,6 +25,16 @@
 
 package net.tammon.sip.packets;
 
+import java.nio.ByteBuffer;
+
 public interface Response extends Packet {
     void setData(byte[] rawData);
+
+    /**
+     * Sets the data of the packet at the current position of the given little endian buffer. The buffer
+     * is not kept by the response, so it may be reused after this call.
+     *
+     * @param rawData buffer containing exactly one packet between its position and its limit
+     */
+    void setData(ByteBuffer rawData);
 }
@@ -0,0 +1,59 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip.packets;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the value of a parameter. The data is sent as it is, use {@link Data#encode(Object, DataAttribute)}
+ * to encode a value according to the data attribute of the parameter.
+ */
+public class WriteData extends AbstractParameterRequest {
+
+    private static final int messageType = 75;
+    private final byte[] data;
+
+    public WriteData(int transactionId, short slaveIndex, short slaveExtension, String idn, Data data)
+            throws IllegalArgumentException {
+        super(transactionId, messageType, slaveIndex, slaveExtension, idn);
+        this.data = data.getRawData();
+    }
+
+    @Override
+    public int getMessageType() {
+        return messageType;
+    }
+
+    @Override
+    public int getTcpMsgLength() {
+        return super.getTcpMsgLength() + 4 + this.data.length;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        super.writeTo(buffer);
+        buffer.putInt(this.data.length).put(this.data);
+    }
+}
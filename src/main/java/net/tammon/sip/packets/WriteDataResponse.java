@@ -0,0 +1,57 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.tammon.sip.packets;
+
+import net.tammon.sip.exceptions.SipInternalException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The acknowledgement of a {@link WriteData} request. It consists of the head only.
+ */
+public class WriteDataResponse extends AbstractPacket implements Response {
+    final static int messageType = 76;
+
+    @Override
+    public int getMessageType() {
+        return messageType;
+    }
+
+    @Override
+    public void setData(byte[] rawData) {
+        try {
+            this.head = new Head(rawData);
+        } catch (IOException e) {
+            throw new SipInternalException("Cannot set data of received S/IP packets", e);
+        }
+    }
+
+    @Override
+    public void setData(ByteBuffer rawData) {
+        this.head = new Head(rawData);
+    }
+}
@@ -27,6 +27,9 @@ package net.tammon.sip.packets;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 
 class ReadOnlyDataTest {
@@ -48,4 +51,17 @@ class ReadOnlyDataTest {
                 readOnlyData.getTcpMsgAsByteArray());
     }
 
-}
\ No newline at end of file
+    @Test
+    void writeTo() {
+        ReadOnlyData readOnlyData = new ReadOnlyData(2, (short)1, (short)0, "S-0-0100.1.0");
+        ByteBuffer buffer = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(4);
+        readOnlyData.writeTo(buffer);
+        byte[] actual = new byte[readOnlyData.getTcpMsgLength()];
+        buffer.position(4);
+        buffer.get(actual);
+        assertArrayEquals(readOnlyData.getTcpMsgAsByteArray(), actual);
+        assertArrayEquals(new byte[]{0x2, 0x0, 0x0, 0x0, 0x47, 0x0, 0x0, 0x0, 0x1, 0x0, 0x0, 0x0, 0x64, 0x0, 0x0, 0x1}, actual);
+    }
+
+}
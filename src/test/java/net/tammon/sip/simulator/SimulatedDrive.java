@@ -0,0 +1,299 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip.simulator;
+
+import net.tammon.sip.packets.Idn;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A SimulatedDrive is the simulated sercos device served by a {@link SipSimulator}. It holds a table of
+ * parameters and the faults which are injected into the responses: a fixed latency, busy responses and the
+ * fragmentation of the responses into small TCP segments. All settings can be changed while the drive is
+ * served. The same parameters are returned for every slave index and slave extension, unless a separate axis is
+ * set for a slave index.
+ */
+public class SimulatedDrive {
+    /**
+     * Service specific error code of the exception response to a request of an unknown parameter
+     */
+    public static final int IDN_NOT_AVAILABLE = 0x1001;
+
+    private final Map<Integer, Parameter> parameters = new ConcurrentHashMap<>();
+    private final Map<Integer, SimulatedDrive> axes = new ConcurrentHashMap<>();
+    private final AtomicLong dataRequests = new AtomicLong();
+    private final AtomicLong pings = new AtomicLong();
+    private volatile long latencyNanos;
+    private volatile int busyEvery;
+    private volatile int fragmentSize;
+    private volatile int leaseTimeout;
+    private volatile boolean stalled;
+
+    /**
+     * Sets the value of a parameter. An existing value of the parameter is replaced.
+     *
+     * @param idn           16-bit or 32-bit idn of the parameter, e.g. S-0-0051 or P-0-1058.0.35
+     * @param dataAttribute the little endian data attribute of the parameter
+     * @param value         the raw value of the parameter
+     * @return this drive
+     */
+    public SimulatedDrive setParameter(String idn, int dataAttribute, byte[] value) {
+        this.parameters.put(getKey(idn), new Parameter(dataAttribute, value.clone()));
+        return this;
+    }
+
+    /**
+     * Sets the name, unit and limits of a parameter which are returned by ReadEverything requests. The
+     * value of the parameter has to be set before.
+     *
+     * @param idn     16-bit or 32-bit idn of the parameter
+     * @param name    the name of the parameter
+     * @param unit    the unit of the parameter, empty if it has no unit
+     * @param minimum the raw minimum input value, empty if the parameter has no minimum
+     * @param maximum the raw maximum input value, empty if the parameter has no maximum
+     * @return this drive
+     */
+    public SimulatedDrive setDescription(String idn, String name, String unit, byte[] minimum, byte[] maximum) {
+        Parameter parameter = this.parameters.computeIfPresent(getKey(idn), (key, existing) ->
+                new Parameter(existing.dataAttribute, existing.value, name, unit, minimum.clone(), maximum.clone()));
+        if (parameter == null) throw new IllegalArgumentException("The parameter " + idn + " has no value");
+        return this;
+    }
+
+    /**
+     * Returns the current value of a parameter, e.g. to check the values written by a client
+     *
+     * @param idn 16-bit or 32-bit idn of the parameter
+     * @return the raw value or null if the drive has no such parameter
+     */
+    public byte[] getValue(String idn) {
+        Parameter parameter = this.parameters.get(getKey(idn));
+        return parameter == null ? null : parameter.value.clone();
+    }
+
+    /**
+     * Serves the parameters of the given drive for all requests to the slave index, e.g. to simulate a
+     * multi-axis controller. The latency, the busy responses and the fragmentation of this drive apply to
+     * all axes.
+     *
+     * @param slaveIndex the slave index of the axis
+     * @param axis       the drive holding the parameters of the axis
+     * @return this drive
+     */
+    public SimulatedDrive setAxis(int slaveIndex, SimulatedDrive axis) {
+        this.axes.put(slaveIndex, axis);
+        return this;
+    }
+
+    /**
+     * Removes a parameter. Requests of the parameter are answered with an exception response.
+     *
+     * @param idn 16-bit or 32-bit idn of the parameter
+     * @return this drive
+     */
+    public SimulatedDrive removeParameter(String idn) {
+        this.parameters.remove(getKey(idn));
+        return this;
+    }
+
+    /**
+     * Delays every response by the given time. Responses of pipelined requests are delayed concurrently.
+     *
+     * @param latencyNanos the delay of every response in nanoseconds, 0 to answer immediately
+     * @return this drive
+     */
+    public SimulatedDrive setLatencyNanos(long latencyNanos) {
+        if (latencyNanos < 0) throw new IllegalArgumentException("The latency must not be negative");
+        this.latencyNanos = latencyNanos;
+        return this;
+    }
+
+    /**
+     * Answers every n-th data request with a busy response instead of the parameter value.
+     *
+     * @param busyEvery interval of the busy responses, 0 to never respond busy
+     * @return this drive
+     */
+    public SimulatedDrive setBusyEvery(int busyEvery) {
+        if (busyEvery < 0) throw new IllegalArgumentException("The busy interval must not be negative");
+        this.busyEvery = busyEvery;
+        return this;
+    }
+
+    /**
+     * Writes the responses in segments of the given size, so the client receives packets that are split
+     * across several reads.
+     *
+     * @param fragmentSize maximum number of bytes per segment, 0 to write every response at once
+     * @return this drive
+     */
+    public SimulatedDrive setFragmentSize(int fragmentSize) {
+        if (fragmentSize < 0) throw new IllegalArgumentException("The fragment size must not be negative");
+        this.fragmentSize = fragmentSize;
+        return this;
+    }
+
+    /**
+     * Answers connect requests with the given lease timeout instead of the one the client has requested
+     *
+     * @param leaseTimeout lease timeout in milliseconds, 0 to accept the requested lease timeout
+     * @return this drive
+     */
+    public SimulatedDrive setLeaseTimeout(int leaseTimeout) {
+        if (leaseTimeout < 0) throw new IllegalArgumentException("The lease timeout must not be negative");
+        this.leaseTimeout = leaseTimeout;
+        return this;
+    }
+
+    /**
+     * Stops reading the requests of the clients, so their socket buffers fill up and their writes block
+     *
+     * @param stalled true to stop reading, false to continue
+     * @return this drive
+     */
+    public SimulatedDrive setStalled(boolean stalled) {
+        this.stalled = stalled;
+        return this;
+    }
+
+    public boolean isStalled() {
+        return stalled;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public int getFragmentSize() {
+        return fragmentSize;
+    }
+
+    /**
+     * @return the number of data requests the drive has received
+     */
+    public long getDataRequestCount() {
+        return dataRequests.get();
+    }
+
+    /**
+     * @return the number of pings the drive has received
+     */
+    public long getPingCount() {
+        return pings.get();
+    }
+
+    int getLeaseTimeout(int requested) {
+        return this.leaseTimeout == 0 ? requested : this.leaseTimeout;
+    }
+
+    void countPing() {
+        this.pings.incrementAndGet();
+    }
+
+    Parameter getParameter(int slaveIndex, int eIdn) {
+        return this.getAxis(slaveIndex).parameters.get(eIdn);
+    }
+
+    /**
+     * Replaces the value of an existing parameter and keeps its description
+     *
+     * @return false if the drive has no such parameter
+     */
+    boolean writeParameter(int slaveIndex, int eIdn, byte[] value) {
+        return this.getAxis(slaveIndex).parameters.computeIfPresent(eIdn, (key, existing) -> new Parameter(existing.dataAttribute, value,
+                existing.name, existing.unit, existing.minimum, existing.maximum)) != null;
+    }
+
+    /**
+     * Counts a data request and decides whether it is answered with a busy response
+     *
+     * @return true if the request has to be answered with a busy response
+     */
+    boolean nextDataRequestIsBusy() {
+        long count = this.dataRequests.incrementAndGet();
+        int busyEvery = this.busyEvery;
+        return busyEvery > 0 && count % busyEvery == 0;
+    }
+
+    private SimulatedDrive getAxis(int slaveIndex) {
+        SimulatedDrive axis = this.axes.get(slaveIndex);
+        return axis == null ? this : axis;
+    }
+
+    private static int getKey(String idn) {
+        return Idn.of(idn).getEIdn();
+    }
+
+    /**
+     * A parameter of the simulated drive
+     */
+    static final class Parameter {
+        private final int dataAttribute;
+        private final byte[] value;
+        private final String name;
+        private final String unit;
+        private final byte[] minimum;
+        private final byte[] maximum;
+
+        private Parameter(int dataAttribute, byte[] value) {
+            this(dataAttribute, value, "", "", new byte[0], new byte[0]);
+        }
+
+        private Parameter(int dataAttribute, byte[] value, String name, String unit, byte[] minimum, byte[] maximum) {
+            this.dataAttribute = dataAttribute;
+            this.value = value;
+            this.name = name;
+            this.unit = unit;
+            this.minimum = minimum;
+            this.maximum = maximum;
+        }
+
+        int getDataAttribute() {
+            return dataAttribute;
+        }
+
+        byte[] getValue() {
+            return value;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getUnit() {
+            return unit;
+        }
+
+        byte[] getMinimum() {
+            return minimum;
+        }
+
+        byte[] getMaximum() {
+            return maximum;
+        }
+    }
+}
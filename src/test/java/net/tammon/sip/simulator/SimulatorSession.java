@@ -0,0 +1,253 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip.simulator;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A client connection of the {@link SipSimulator}. It reads the requests on its own thread and writes the
+ * responses either immediately or, if the drive has a latency, on the scheduler thread of the simulator.
+ */
+final class SimulatorSession {
+    private static final int HEAD_LENGTH = 8;
+    private static final int CONNECT = 63, CONNECT_RESPONSE = 64, PING = 65, PONG = 66, EXCEPTION = 67, BUSY = 68;
+    private static final int READ_DESCRIPTION = 69, READ_DESCRIPTION_RESPONSE = 70;
+    private static final int READ_ONLY_DATA = 71, READ_ONLY_DATA_RESPONSE = 72;
+    private static final int READ_EVERYTHING = 73, READ_EVERYTHING_RESPONSE = 74;
+    private static final int WRITE_DATA = 75, WRITE_DATA_RESPONSE = 76;
+    // common error codes are sent as their ordinal + 1 (see CommonErrorCodes)
+    private static final short UNKNOWN_MESSAGE_TYPE = 3, SERVICE_SPECIFIC = 4;
+    private static final int[] SUPPORTED_MESSAGE_TYPES = {CONNECT, PING, READ_DESCRIPTION, READ_ONLY_DATA, READ_EVERYTHING, WRITE_DATA};
+
+    private final SimulatedDrive drive;
+    private final SocketChannel channel;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<SimulatorSession> onClose;
+    private final ByteBuffer head = ByteBuffer.allocate(HEAD_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer body = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+
+    SimulatorSession(SimulatedDrive drive, SocketChannel channel, ScheduledExecutorService scheduler,
+                     Consumer<SimulatorSession> onClose) {
+        this.drive = drive;
+        this.channel = channel;
+        this.scheduler = scheduler;
+        this.onClose = onClose;
+    }
+
+    void start() {
+        Thread thread = new Thread(this::serve, "sip-simulator-session-" + this.channel.socket().getPort());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void serve() {
+        try {
+            while (this.channel.isOpen()) {
+                while (this.drive.isStalled() && this.channel.isOpen()) Thread.sleep(1);
+                if (!this.readFully(this.head, HEAD_LENGTH)) break;
+                int transactionId = this.head.getInt(0);
+                int messageType = this.head.getInt(4);
+                int bodyLength = getBodyLength(messageType);
+                if (bodyLength < 0) {
+                    this.write(exception(transactionId, UNKNOWN_MESSAGE_TYPE, 0));
+                    break;
+                }
+                if (!this.readFully(this.body, bodyLength)) break;
+                ByteBuffer value = null;
+                if (messageType == WRITE_DATA) {
+                    value = ByteBuffer.allocate(this.body.getInt(8));
+                    if (!this.readFully(value, value.capacity())) break;
+                }
+                this.respond(this.handle(transactionId, messageType, this.body, value));
+            }
+        } catch (IOException e) {
+            // the client closed the connection
+        } catch (InterruptedException e) {
+            // the simulator has been closed
+        } finally {
+            this.close();
+        }
+    }
+
+    private static int getBodyLength(int messageType) {
+        switch (messageType) {
+            case CONNECT:
+                return 12;
+            case PING:
+                return 0;
+            case READ_DESCRIPTION:
+            case READ_ONLY_DATA:
+            case READ_EVERYTHING:
+                return 8;
+            case WRITE_DATA:
+                // followed by the number of bytes announced in the data length
+                return 12;
+            default:
+                return -1;
+        }
+    }
+
+    private boolean readFully(ByteBuffer buffer, int length) throws IOException {
+        ((Buffer) buffer).clear().limit(length);
+        while (buffer.hasRemaining())
+            if (this.channel.read(buffer) < 0) return false;
+        ((Buffer) buffer).flip();
+        return true;
+    }
+
+    private ByteBuffer handle(int transactionId, int messageType, ByteBuffer body, ByteBuffer value) {
+        switch (messageType) {
+            case CONNECT:
+                return connectResponse(transactionId, body.getInt(0), body.getInt(4), this.drive.getLeaseTimeout(body.getInt(8)));
+            case PING:
+                this.drive.countPing();
+                return allocate(HEAD_LENGTH).putInt(transactionId).putInt(PONG);
+            case READ_ONLY_DATA:
+                if (this.drive.nextDataRequestIsBusy())
+                    return allocate(HEAD_LENGTH).putInt(transactionId).putInt(BUSY);
+                SimulatedDrive.Parameter parameter = this.drive.getParameter(Short.toUnsignedInt(body.getShort(0)), body.getInt(4));
+                if (parameter == null)
+                    return exception(transactionId, SERVICE_SPECIFIC, SimulatedDrive.IDN_NOT_AVAILABLE);
+                return allocate(HEAD_LENGTH + 8 + parameter.getValue().length)
+                        .putInt(transactionId).putInt(READ_ONLY_DATA_RESPONSE)
+                        .putInt(parameter.getDataAttribute()).putInt(parameter.getValue().length)
+                        .put(parameter.getValue());
+            case READ_DESCRIPTION:
+            case READ_EVERYTHING:
+                if (this.drive.nextDataRequestIsBusy())
+                    return allocate(HEAD_LENGTH).putInt(transactionId).putInt(BUSY);
+                SimulatedDrive.Parameter described = this.drive.getParameter(Short.toUnsignedInt(body.getShort(0)), body.getInt(4));
+                if (described == null)
+                    return exception(transactionId, SERVICE_SPECIFIC, SimulatedDrive.IDN_NOT_AVAILABLE);
+                return descriptionResponse(transactionId, described, messageType == READ_EVERYTHING);
+            case WRITE_DATA:
+                if (this.drive.nextDataRequestIsBusy())
+                    return allocate(HEAD_LENGTH).putInt(transactionId).putInt(BUSY);
+                if (!this.drive.writeParameter(Short.toUnsignedInt(body.getShort(0)), body.getInt(4), value.array()))
+                    return exception(transactionId, SERVICE_SPECIFIC, SimulatedDrive.IDN_NOT_AVAILABLE);
+                return allocate(HEAD_LENGTH).putInt(transactionId).putInt(WRITE_DATA_RESPONSE);
+            default:
+                return exception(transactionId, UNKNOWN_MESSAGE_TYPE, 0);
+        }
+    }
+
+    private static ByteBuffer connectResponse(int transactionId, int sipVersion, int busyTimeout, int leaseTimeout) {
+        ByteBuffer response = allocate(HEAD_LENGTH + 16 + 4 * SUPPORTED_MESSAGE_TYPES.length)
+                .putInt(transactionId).putInt(CONNECT_RESPONSE)
+                .putInt(sipVersion).putInt(busyTimeout).putInt(leaseTimeout)
+                .putInt(SUPPORTED_MESSAGE_TYPES.length);
+        for (int messageType : SUPPORTED_MESSAGE_TYPES) response.putInt(messageType);
+        return response;
+    }
+
+    private static ByteBuffer descriptionResponse(int transactionId, SimulatedDrive.Parameter parameter,
+                                                  boolean withValue) {
+        byte[] name = parameter.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] unit = parameter.getUnit().getBytes(StandardCharsets.UTF_8);
+        byte[] value = parameter.getValue();
+        ByteBuffer response = allocate(HEAD_LENGTH + 18 + name.length + unit.length + parameter.getMinimum().length
+                + parameter.getMaximum().length + (withValue ? 4 + value.length : 0))
+                .putInt(transactionId).putInt(withValue ? READ_EVERYTHING_RESPONSE : READ_DESCRIPTION_RESPONSE)
+                // data status
+                .putShort((short) 0);
+        putWithShortLength(response, name).putInt(parameter.getDataAttribute());
+        putWithShortLength(response, unit);
+        putWithShortLength(response, parameter.getMinimum());
+        putWithShortLength(response, parameter.getMaximum());
+        // maximum list length
+        response.putInt(value.length);
+        return withValue ? response.putInt(value.length).put(value) : response;
+    }
+
+    private static ByteBuffer putWithShortLength(ByteBuffer buffer, byte[] value) {
+        return buffer.putShort((short) value.length).put(value);
+    }
+
+    private static ByteBuffer exception(int transactionId, short commonErrorCode, int specificErrorCode) {
+        return allocate(HEAD_LENGTH + 6).putInt(transactionId).putInt(EXCEPTION)
+                .putShort(commonErrorCode).putInt(specificErrorCode);
+    }
+
+    private static ByteBuffer allocate(int length) {
+        return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void respond(ByteBuffer response) throws IOException {
+        long latencyNanos = this.drive.getLatencyNanos();
+        if (latencyNanos == 0) {
+            this.write(response);
+            return;
+        }
+        try {
+            this.scheduler.schedule(() -> {
+                try {
+                    this.write(response);
+                } catch (IOException e) {
+                    this.close();
+                }
+            }, latencyNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // the simulator has been closed
+            this.close();
+        }
+    }
+
+    private void write(ByteBuffer response) throws IOException {
+        ((Buffer) response).flip();
+        int fragmentSize = this.drive.getFragmentSize();
+        synchronized (this.channel) {
+            while (response.hasRemaining()) {
+                if (fragmentSize > 0) {
+                    ByteBuffer fragment = response.duplicate();
+                    ((Buffer) fragment).limit(Math.min(response.limit(), response.position() + fragmentSize));
+                    while (fragment.hasRemaining()) this.channel.write(fragment);
+                    ((Buffer) response).position(fragment.position());
+                    // gives the client the chance to read the fragment before the next one is sent
+                    Thread.yield();
+                } else {
+                    this.channel.write(response);
+                }
+            }
+        }
+    }
+
+    void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.onClose.accept(this);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Sercos Internet Protocol (SIP) version 1
+ * Copyright (c) 2017. tammon (Tammo Schwindt)
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.tammon.sip.simulator;
+
+import net.tammon.sip.exceptions.SipInternalException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * The SipSimulator serves {@link SimulatedDrive}s over TCP on the loopback interface, so the library can be
+ * load and latency tested without a physical sercos device. Every drive gets its own port and every accepted
+ * connection is served by its own thread. Delayed responses are sent by one shared scheduler thread.
+ * <p>
+ * The simulator answers Connect, Ping, ReadDataDescription, ReadOnlyData, ReadEverything and WriteData requests. Requests of other message types are answered
+ * with an exception response and the connection is closed, because their length is unknown.
+ */
+public final class SipSimulator implements Closeable {
+    private final List<ServerSocketChannel> serverChannels = new CopyOnWriteArrayList<>();
+    private final List<Thread> acceptors = new CopyOnWriteArrayList<>();
+    private final List<SimulatorSession> sessions = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sip-simulator-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed;
+
+    /**
+     * Serves the drive on a free port of the loopback interface
+     *
+     * @param drive the drive to serve
+     * @return the port the drive is served on
+     * @throws IOException if the port cannot be bound
+     */
+    public int start(SimulatedDrive drive) throws IOException {
+        return this.start(drive, 0);
+    }
+
+    /**
+     * Serves the drive on the given port of the loopback interface
+     *
+     * @param drive the drive to serve
+     * @param port  the port to serve the drive on, 0 for a free port
+     * @return the port the drive is served on
+     * @throws IOException if the port cannot be bound
+     */
+    public int start(SimulatedDrive drive, int port) throws IOException {
+        if (this.closed) throw new SipInternalException("The simulator has been closed");
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        // allows to restart a drive on the port of a closed simulator
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.serverChannels.add(serverChannel);
+        int boundPort = serverChannel.socket().getLocalPort();
+        Thread acceptor = new Thread(() -> this.accept(serverChannel, drive), "sip-simulator-" + boundPort);
+        acceptor.setDaemon(true);
+        this.acceptors.add(acceptor);
+        acceptor.start();
+        return boundPort;
+    }
+
+    private void accept(ServerSocketChannel serverChannel, SimulatedDrive drive) {
+        while (!this.closed && serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                SimulatorSession session = new SimulatorSession(drive, channel, this.scheduler, this.sessions::remove);
+                this.sessions.add(session);
+                session.start();
+            } catch (IOException e) {
+                // the server channel has been closed
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of open client connections
+     */
+    public int getConnectionCount() {
+        return this.sessions.size();
+    }
+
+    /**
+     * Closes all ports and client connections of the simulator. The ports are released when the call returns,
+     * so a drive can be restarted on the same port by a new simulator.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        for (ServerSocketChannel serverChannel : this.serverChannels) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        // the socket of a server channel is released once its blocked acceptor thread has left accept
+        for (Thread acceptor : this.acceptors) {
+            try {
+                acceptor.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (SimulatorSession session : this.sessions)
+            session.close();
+        this.scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,41 @@
+package net.tammon.sip
+
+import net.tammon.sip.packets.DataAttribute
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import java.io.IOException
+import java.nio.file.Files
+
+class DataAttributeCacheTest {
+
+    @Test
+    fun `should reload saved data attributes`() {
+        // arrange
+        val file = Files.createTempFile("sip", ".properties")
+        val cache = DataAttributeCache()
+        cache.put(0, 0, "S-0-0051", DataAttribute.valueOf(0x00220001))
+        cache.put(1, 2, "P-0-1058.0.35", DataAttribute.valueOf(0x04250001))
+        // act
+        cache.save(file)
+        val loaded = DataAttributeCache.load(file)
+        Files.delete(file)
+        // assert
+        assertEquals(2, loaded.size())
+        assertSame(DataAttribute.valueOf(0x00220001), loaded.get(0, 0, "S-0-0051.0.0"))
+        assertEquals(0x04250001, loaded.get(1, 2, "P-0-1058.0.35").rawDataAttribute)
+        assertNull(loaded.get(0, 0, "P-0-1058.0.35"))
+    }
+
+    @Test
+    fun `should reject invalid entries`() {
+        // arrange
+        val file = Files.createTempFile("sip", ".properties")
+        Files.write(file, listOf("0/S-0-0051=220001"))
+        // act / assert
+        assertThrows(IOException::class.java) { DataAttributeCache.load(file) }
+        Files.delete(file)
+    }
+}
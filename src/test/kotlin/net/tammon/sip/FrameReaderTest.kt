@@ -0,0 +1,78 @@
+package net.tammon.sip
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import java.nio.ByteBuffer
+import java.nio.channels.ReadableByteChannel
+
+class FrameReaderTest {
+
+    /**
+     * delivers the given chunks one per read call
+     */
+    private class ChunkedChannel(vararg chunks: ByteArray) : ReadableByteChannel {
+        private val chunks = chunks.toMutableList()
+
+        override fun read(dst: ByteBuffer): Int {
+            if (chunks.isEmpty()) return -1
+            val chunk = chunks.removeAt(0)
+            val length = minOf(chunk.size, dst.remaining())
+            dst.put(chunk, 0, length)
+            if (length < chunk.size) chunks.add(0, chunk.copyOfRange(length, chunk.size))
+            return length
+        }
+
+        override fun isOpen() = true
+        override fun close() {}
+    }
+
+    private fun bytes(vararg bytes: Int) = ByteArray(bytes.size) { bytes[it].toByte() }
+
+    private val pong = bytes(7, 0, 0, 0, 66, 0, 0, 0)
+    private val readOnlyDataResponse = bytes(8, 0, 0, 0, 72, 0, 0, 0, 1, 0, 0x32, 0, 4, 0, 0, 0, 0x2A, 0, 0, 0)
+
+    @Test
+    fun `should complete packets split across reads`() {
+        // arrange
+        val reader = FrameReader()
+        val channel = ChunkedChannel(readOnlyDataResponse.copyOfRange(0, 5), readOnlyDataResponse.copyOfRange(5, 13),
+                readOnlyDataResponse.copyOfRange(13, readOnlyDataResponse.size))
+        // act
+        val frame = reader.readFrame(channel)
+        // assert
+        assertEquals(readOnlyDataResponse.size, frame.remaining())
+        assertEquals(8, frame.getInt(0))
+        assertEquals(42, frame.getInt(16))
+    }
+
+    @Test
+    fun `should split packets received with a single read`() {
+        // arrange
+        val reader = FrameReader()
+        reader.readFrom(ChunkedChannel(pong + readOnlyDataResponse + pong.copyOfRange(0, 3)))
+        // act
+        val first = reader.nextFrame()
+        val second = reader.nextFrame()
+        val third = reader.nextFrame()
+        // assert
+        assertEquals(8, first.remaining())
+        assertEquals(7, first.getInt(0))
+        assertEquals(20, second.remaining())
+        assertEquals(8, second.getInt(0))
+        assertNull(third)
+    }
+
+    @Test
+    fun `should grow the buffer for packets larger than its capacity`() {
+        // arrange
+        val data = ByteArray(100) { it.toByte() }
+        val packet = bytes(9, 0, 0, 0, 72, 0, 0, 0, 1, 0, 0x20, 0x04, 100, 0, 0, 0) + data
+        val reader = FrameReader(16)
+        // act
+        val frame = reader.readFrame(ChunkedChannel(packet.copyOfRange(0, 10), packet.copyOfRange(10, packet.size)))
+        // assert
+        assertEquals(packet.size, frame.remaining())
+        assertEquals(99.toByte(), frame.get(packet.size - 1))
+    }
+}
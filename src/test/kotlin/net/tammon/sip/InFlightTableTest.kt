@@ -0,0 +1,66 @@
+package net.tammon.sip
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.Executors
+
+class InFlightTableTest {
+
+    private class Pending(val transactionId: Int)
+
+    private val table = InFlightTable<Pending>(4) { it.transactionId }
+
+    @Test
+    fun `should keep requests whose slot is taken by an older request`() {
+        // arrange
+        val slow = Pending(0)
+        val colliding = Pending(16)
+        // act
+        table.put(slow)
+        val registered = table.put(colliding)
+        // assert
+        assertTrue(registered)
+        assertEquals(2, table.size())
+        assertSame(colliding, table.remove(16))
+        assertSame(slow, table.remove(0))
+        assertNull(table.remove(0))
+        assertEquals(0, table.size())
+    }
+
+    @Test
+    fun `should reject transaction ids which are in use`() {
+        // arrange
+        table.put(Pending(3))
+        table.put(Pending(-13))
+        // act & assert
+        assertFalse(table.put(Pending(3)))
+        assertFalse(table.put(Pending(-13)))
+        assertFalse(table.remove(Pending(3)))
+        assertEquals(2, table.removeAll().size)
+        assertEquals(0, table.size())
+    }
+
+    @Test
+    fun `should register and remove concurrently`() {
+        // arrange
+        val executor = Executors.newFixedThreadPool(4)
+        // act
+        val tasks = List(4) { thread ->
+            executor.submit {
+                for (i in 0 until 10000) {
+                    val pending = Pending(i * 4 + thread)
+                    assertTrue(table.put(pending))
+                    assertSame(pending, table.remove(pending.transactionId))
+                }
+            }
+        }
+        tasks.forEach { it.get() }
+        executor.shutdown()
+        // assert
+        assertEquals(0, table.size())
+    }
+}
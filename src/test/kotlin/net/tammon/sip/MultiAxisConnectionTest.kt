@@ -0,0 +1,84 @@
+package net.tammon.sip
+
+import net.tammon.sip.exceptions.SipProtocolException
+import net.tammon.sip.simulator.SimulatedDrive
+import net.tammon.sip.simulator.SipSimulator
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class MultiAxisConnectionTest {
+
+    private val simulator = SipSimulator()
+    private val drive = SimulatedDrive()
+            .setParameter("S-0-0051", SIGNED_INT, value(1))
+            .setAxis(2, SimulatedDrive()
+                    .setParameter("S-0-0051", SIGNED_INT, value(2))
+                    .setParameter("S-0-0100", SIGNED_INT, value(20)))
+            .setAxis(3, SimulatedDrive()
+                    .setParameter("S-0-0051", SIGNED_INT, value(3))
+                    .setParameter("S-0-0100", SIGNED_INT, value(30)))
+            .setFragmentSize(5)
+
+    @AfterEach
+    fun tearDown() = simulator.close()
+
+    private fun connect(vararg slaveIndexes: Int): MultiAxisConnection {
+        val properties = AbstractSipConnection.getDefaultProperties("127.0.0.1", false, 8)
+        properties.setProperty("sipPort", simulator.start(drive).toString())
+        return MultiAxisConnection(TCPConnection(properties), *slaveIndexes)
+    }
+
+    @Test
+    fun `should read the parameters of all axes`() {
+        // arrange
+        val connection = connect(1, 2, 3)
+        // act
+        val results = connection.readAll(listOf("S-0-0051", "S-0-0100"))
+        val connectionCount = simulator.connectionCount
+        connection.disconnect()
+        // assert
+        assertEquals(listOf(1, 2, 3), results.map { it[0].data.toInt() })
+        assertTrue(results[0][1].failure is SipProtocolException)
+        assertEquals(listOf(20, 30), results.drop(1).map { it[1].data.toInt() })
+        assertEquals(1, connectionCount)
+    }
+
+    @Test
+    fun `should address requests of an axis to its slave index`() {
+        // arrange
+        val connection = connect(2, 3)
+        val axis = connection.getAxis(3)
+        // act
+        axis.writeData("S-0-0100", 31)
+        val value = axis.readData("S-0-0100").toInt()
+        val otherValue = connection.getAxis(2).readData("S-0-0100").toInt()
+        connection.disconnect()
+        // assert
+        assertEquals(31, value)
+        assertEquals(20, otherValue)
+        assertEquals(listOf(2, 3), connection.axes.map { it.slaveIndex })
+    }
+
+    @Test
+    fun `should reject unknown and duplicate axes`() {
+        // arrange
+        val connection = connect(1)
+        // act & assert
+        assertThrows(IllegalArgumentException::class.java) { connection.getAxis(2) }
+        assertThrows(IllegalArgumentException::class.java) { MultiAxisConnection(connection.connection, 1, 1) }
+        connection.disconnect()
+    }
+
+    companion object {
+        // four byte signed decimal without decimal places
+        private const val SIGNED_INT = 0x00220001
+
+        private fun value(value: Int): ByteArray =
+                ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array()
+    }
+}
@@ -0,0 +1,160 @@
+package net.tammon.sip
+
+import net.tammon.sip.exceptions.SipCommunicationException
+import net.tammon.sip.exceptions.SipProtocolException
+import net.tammon.sip.simulator.SimulatedDrive
+import net.tammon.sip.simulator.SipSimulator
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class NioSipConnectionTest {
+
+    private val simulator = SipSimulator()
+    private val eventLoop = SipEventLoop("sip-event-loop-test")
+    private val drive = SimulatedDrive()
+            .setParameter("S-0-0051", SIGNED_INT, value(123456))
+            .setParameter("P-0-1058.0.35", SIGNED_INT, value(-42))
+
+    @AfterEach
+    fun tearDown() {
+        eventLoop.close()
+        simulator.close()
+    }
+
+    private fun connect(port: Int, maxInFlight: Int = 1, keepAlive: Boolean = false,
+                        leaseTimeout: Int = 10000): NioSipConnection {
+        val properties = AbstractSipConnection.getDefaultProperties("127.0.0.1", keepAlive, maxInFlight)
+        properties.setProperty("sipPort", port.toString())
+        properties.setProperty("leaseTimeout", leaseTimeout.toString())
+        return NioSipConnection(properties, eventLoop)
+    }
+
+    @Test
+    fun `should connect and read a parameter of the simulated drive`() {
+        // arrange
+        val connection = connect(simulator.start(drive))
+        // act
+        val position = connection.readData(0, 0, "S-0-0051")
+        val connected = connection.isConnected
+        val connectionCount = simulator.connectionCount
+        connection.disconnect()
+        // assert
+        assertTrue(connected)
+        assertEquals(123456, position.toInt())
+        assertEquals(1, connectionCount)
+    }
+
+    @Test
+    fun `should pipeline reads`() {
+        // arrange
+        drive.setLatencyNanos(TimeUnit.MILLISECONDS.toNanos(1))
+        val connection = connect(simulator.start(drive), 8)
+        // act
+        val futures = (1..200).map { connection.readDataAsync(0, 0, if (it % 2 == 0) "S-0-0051" else "P-0-1058.0.35") }
+        val values = futures.map { it.get(10, TimeUnit.SECONDS).toInt() }
+        connection.disconnect()
+        // assert
+        assertEquals((1..200).map { if (it % 2 == 0) 123456 else -42 }, values)
+    }
+
+    @Test
+    fun `should reassemble fragmented responses`() {
+        // arrange
+        drive.setDescription("S-0-0051", "Position feedback value 1", "mm", value(-1000), value(1000)).setFragmentSize(3)
+        val connection = connect(simulator.start(drive), 4)
+        // act
+        val values = (1..50).map { connection.readDataAsync(0, 0, "P-0-1058.0.35") }.map { it.get(10, TimeUnit.SECONDS).toInt() }
+        val response = connection.readEverything(0, 0, "S-0-0051")
+        connection.disconnect()
+        // assert
+        assertTrue(values.all { it == -42 })
+        assertEquals("Position feedback value 1", response.name)
+        assertEquals(123456, response.data.toInt())
+    }
+
+    @Test
+    fun `should read batches with failures per parameter`() {
+        // arrange
+        val connection = connect(simulator.start(drive), 4)
+        val idns = listOf("S-0-0051", "S-0-0100", "P-0-1058.0.35", "invalid") + List(20) { "S-0-0051" }
+        // act
+        val results = connection.readDataBatch(0, 0, idns)
+        connection.disconnect()
+        // assert
+        assertEquals(idns, results.map { it.idn })
+        assertEquals(123456, results[0].data.toInt())
+        assertTrue(results[1].failure is SipProtocolException)
+        assertEquals(-42, results[2].data.toInt())
+        assertTrue(results[3].failure is IllegalArgumentException)
+        assertTrue(results.drop(4).all { it.data.toInt() == 123456 })
+    }
+
+    @Test
+    fun `should retry requests answered busy`() {
+        // arrange
+        drive.setBusyEvery(3)
+        val connection = connect(simulator.start(drive), 4)
+        // act
+        val results = connection.readDataBatch(0, 0, List(30) { "S-0-0051" })
+        connection.disconnect()
+        // assert
+        assertTrue(results.all { it.isSuccess && it.data.toInt() == 123456 })
+        assertTrue(drive.dataRequestCount > 30)
+    }
+
+    @Test
+    fun `should ping idle connections`() {
+        // arrange
+        val connection = connect(simulator.start(drive), keepAlive = true, leaseTimeout = 200)
+        // act
+        Thread.sleep(400)
+        val pings = drive.pingCount
+        connection.disconnect()
+        // assert
+        assertTrue(pings in 1..4, "pings while idle: " + pings)
+    }
+
+    @Test
+    fun `should fail pending requests on disconnect`() {
+        // arrange
+        drive.setLatencyNanos(TimeUnit.MILLISECONDS.toNanos(500))
+        val connection = connect(simulator.start(drive), 4)
+        val futures = List(4) { connection.readDataAsync(0, 0, "S-0-0051") }
+        // act
+        connection.disconnect()
+        // assert
+        futures.forEach {
+            val exception = assertThrows(ExecutionException::class.java) { it.get(1, TimeUnit.SECONDS) }
+            assertTrue(exception.cause is SipCommunicationException)
+        }
+        assertFalse(connection.isConnected)
+    }
+
+    @Test
+    fun `should fail requests after the event loop has been closed`() {
+        // arrange
+        val connection = connect(simulator.start(drive))
+        // act
+        eventLoop.close()
+        val future = connection.readDataAsync(0, 0, "S-0-0051")
+        // assert
+        val exception = assertThrows(ExecutionException::class.java) { future.get(1, TimeUnit.SECONDS) }
+        assertTrue(exception.cause is SipCommunicationException)
+    }
+
+    companion object {
+        // four byte signed decimal without decimal places
+        private const val SIGNED_INT = 0x00220001
+
+        private fun value(value: Int): ByteArray =
+                ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array()
+    }
+}
@@ -0,0 +1,91 @@
+package net.tammon.sip
+
+import net.tammon.sip.exceptions.SipCommunicationException
+import net.tammon.sip.simulator.SimulatedDrive
+import net.tammon.sip.simulator.SipSimulator
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.TimeUnit
+
+class ResilientSipConnectionTest {
+
+    private val drive = SimulatedDrive().setParameter("S-0-0051", 0x00220001, byteArrayOf(42, 0, 0, 0))
+    private var simulator = SipSimulator()
+    private val port = simulator.start(drive)
+
+    @AfterEach
+    fun tearDown() = simulator.close()
+
+    private fun connect(replayReads: Boolean, circuitBreakerThreshold: Int = 5) = ResilientSipConnection(
+            AbstractSipConnection.getDefaultProperties("127.0.0.1", false, 4).apply {
+                setProperty("sipPort", port.toString())
+                setProperty("busyTimeout", "200")
+                setProperty("reconnectDelay", "10")
+                setProperty("circuitBreakerThreshold", circuitBreakerThreshold.toString())
+                setProperty("circuitBreakerOpenTime", "300")
+                put("replayReads", replayReads)
+            })
+
+    private fun restartDrive() {
+        simulator.close()
+        simulator = SipSimulator()
+        simulator.start(drive, port)
+    }
+
+    @Test
+    fun `should reconnect after the drive restarted`() {
+        // arrange
+        val connection = connect(replayReads = false)
+        connection.readData(0, 0, "S-0-0051")
+        // act
+        restartDrive()
+        // the connection notices the loss once its reader fails
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1)
+        while (connection.isConnected && System.nanoTime() < deadline) Thread.sleep(1)
+        val connected = connection.isConnected
+        val value = connection.readData(0, 0, "S-0-0051").toInt()
+        connection.disconnect()
+        // assert
+        assertFalse(connected)
+        assertEquals(42, value)
+        assertEquals(1, connection.reconnectCount)
+    }
+
+    @Test
+    fun `should replay reads which were lost with the connection`() {
+        // arrange
+        val connection = connect(replayReads = true)
+        connection.readData(0, 0, "S-0-0051")
+        // act
+        restartDrive()
+        val value = connection.readData(0, 0, "S-0-0051").toInt()
+        restartDrive()
+        val results = connection.readDataBatch(0, 0, List(10) { "S-0-0051" })
+        connection.disconnect()
+        // assert
+        assertEquals(42, value)
+        assertTrue(results.all { it.isSuccess && it.data.toInt() == 42 })
+        assertEquals(2, connection.reconnectCount)
+    }
+
+    @Test
+    fun `should open the circuit breaker after failed reconnects`() {
+        // arrange
+        val connection = connect(replayReads = false, circuitBreakerThreshold = 2)
+        simulator.close()
+        // act & assert
+        repeat(3) { assertThrows(SipCommunicationException::class.java) { connection.readData(0, 0, "S-0-0051") } }
+        assertTrue(connection.isCircuitOpen)
+        simulator = SipSimulator()
+        simulator.start(drive, port)
+        assertThrows(SipCommunicationException::class.java) { connection.readData(0, 0, "S-0-0051") }
+        Thread.sleep(300)
+        assertFalse(connection.isCircuitOpen)
+        assertEquals(42, connection.readData(0, 0, "S-0-0051").toInt())
+        connection.disconnect()
+    }
+}
@@ -0,0 +1,132 @@
+package net.tammon.sip
+
+import net.tammon.sip.exceptions.SipSocketTimeoutException
+import net.tammon.sip.simulator.SimulatedDrive
+import net.tammon.sip.simulator.SipSimulator
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import java.util.Properties
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class SipConnectionPoolTest {
+
+    private val simulator = SipSimulator()
+    private val port = simulator.start(SimulatedDrive()
+            .setParameter("S-0-0051", 0x00220001, byteArrayOf(42, 0, 0, 0))
+            .setLatencyNanos(TimeUnit.MILLISECONDS.toNanos(5)))
+    private val pool = SipConnectionPool(properties(leaseTimeout = 10000), 2)
+
+    @AfterEach
+    fun tearDown() {
+        pool.close()
+        simulator.close()
+    }
+
+    private fun properties(leaseTimeout: Int) = AbstractSipConnection.getDefaultProperties("127.0.0.1", false, 1).apply {
+        setProperty("sipPort", port.toString())
+        setProperty("busyTimeout", "200")
+        setProperty("leaseTimeout", leaseTimeout.toString())
+    }
+
+    @Test
+    fun `should reuse released connections`() {
+        // act
+        val first = pool.borrow("127.0.0.1")
+        pool.release(first)
+        val second = pool.borrow("127.0.0.1")
+        pool.release(second)
+        // assert
+        assertSame(first, second)
+        assertEquals(1, pool.idleCount)
+        assertEquals(1, simulator.connectionCount)
+    }
+
+    @Test
+    fun `should bound the connections per drive`() {
+        // arrange
+        val first = pool.borrow("127.0.0.1", port)
+        val second = pool.borrow("127.0.0.1", port)
+        // act & assert
+        assertNotSame(first, second)
+        assertThrows(SipSocketTimeoutException::class.java) { pool.borrow("127.0.0.1", port) }
+        pool.release(first)
+        assertSame(first, pool.borrow("127.0.0.1", port))
+    }
+
+    @Test
+    fun `should fan out reads over several connections`() {
+        // arrange
+        val executor = Executors.newFixedThreadPool(4)
+        val read = Callable {
+            val connection = pool.borrow("127.0.0.1")
+            try {
+                connection.readData(0, 0, "S-0-0051").toInt()
+            } finally {
+                pool.release(connection)
+            }
+        }
+        // act
+        val values = executor.invokeAll(List(40) { read }).map { it.get() }
+        executor.shutdown()
+        // assert
+        assertEquals(List(40) { 42 }, values)
+        assertEquals(2, simulator.connectionCount)
+        assertEquals(0, pool.borrowedCount)
+    }
+
+    @Test
+    fun `should close idle connections before the lease timeout`() {
+        // arrange
+        val shortLeasePool = SipConnectionPool(properties(leaseTimeout = 200), 2)
+        shortLeasePool.release(shortLeasePool.borrow("127.0.0.1"))
+        // act
+        Thread.sleep(400)
+        // assert
+        assertEquals(0, shortLeasePool.idleCount)
+        shortLeasePool.close()
+    }
+
+    @Test
+    fun `should expire idle connections after half of the lease timeout granted by the drive`() {
+        // arrange
+        val shortLeasePort = simulator.start(SimulatedDrive().setLeaseTimeout(200))
+        val first = pool.borrow("127.0.0.1", shortLeasePort)
+        pool.release(first)
+        // act
+        Thread.sleep(150)
+        val second = pool.borrow("127.0.0.1", shortLeasePort)
+        pool.release(second)
+        // assert
+        assertEquals(200, (first as TCPConnection).leaseTimeout)
+        assertNotSame(first, second)
+        assertEquals(false, first.isConnected)
+    }
+
+    @Test
+    fun `should take the missing properties from the defaults`() {
+        // arrange
+        val partialPool = SipConnectionPool(Properties().apply { setProperty("sipPort", port.toString()) }, 1)
+        // act
+        val connection = partialPool.borrow("127.0.0.1")
+        val value = connection.readData(0, 0, "S-0-0051").toInt()
+        partialPool.release(connection)
+        partialPool.close()
+        // assert
+        assertEquals(42, value)
+    }
+
+    @Test
+    fun `should disconnect invalidated connections`() {
+        val connection = pool.borrow("127.0.0.1")
+        pool.invalidate(connection)
+        assertEquals(false, connection.isConnected)
+        assertEquals(0, pool.idleCount)
+        assertThrows(IllegalArgumentException::class.java) { pool.release(connection) }
+    }
+}
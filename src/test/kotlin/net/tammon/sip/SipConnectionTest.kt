@@ -0,0 +1,75 @@
+package net.tammon.sip
+
+import net.tammon.sip.exceptions.SipProtocolException
+import net.tammon.sip.exceptions.SipServiceNotSupportedException
+import net.tammon.sip.packets.Data
+import net.tammon.sip.packets.DataAttribute
+import net.tammon.sip.packets.Idn
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.net.InetAddress
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class SipConnectionTest {
+
+    /**
+     * implements only the methods the interface had before the async, batch and write methods were added
+     */
+    private class BlockingConnection : SipConnection {
+        override fun isConnected() = true
+        override fun getIpAddress(): InetAddress = InetAddress.getLoopbackAddress()
+        override fun getSipPort() = 35021
+        override fun getSipVersion() = 1
+        override fun getSupportedMessages() = listOf(71)
+        override fun disconnect() {}
+
+        override fun readData(slaveIndex: Int, slaveExtension: Int, idn: String): Data {
+            if (idn != "S-0-0051") throw SipProtocolException("unknown idn " + idn)
+            return Data(byteArrayOf(42, 0, 0, 0), DataAttribute(0x00220001))
+        }
+    }
+
+    private val connection = BlockingConnection()
+
+    @Test
+    fun `should read asynchronously by default`() {
+        // act
+        val data = connection.readDataAsync(0, 0, "S-0-0051").get(1, TimeUnit.SECONDS)
+        val byIdn = connection.readDataAsync(0, 0, Idn.of("S-0-0051")).get(1, TimeUnit.SECONDS)
+        val failure = assertThrows(ExecutionException::class.java) {
+            connection.readDataAsync(0, 0, "S-0-0100").get(1, TimeUnit.SECONDS)
+        }
+        // assert
+        assertEquals(42, data.toInt())
+        assertEquals(42, byIdn.toInt())
+        assertEquals(42, connection.readData(0, 0, Idn.of("S-0-0051")).toInt())
+        assertTrue(failure.cause is SipProtocolException)
+    }
+
+    @Test
+    fun `should read batches one parameter after the other by default`() {
+        // act
+        val results = connection.readDataBatchAsync(0, 0, listOf("S-0-0051", "S-0-0100")).get(1, TimeUnit.SECONDS)
+        // assert
+        assertEquals(42, results[0].data.toInt())
+        assertFalse(results[1].isSuccess)
+        assertTrue(results[1].failure is SipProtocolException)
+    }
+
+    @Test
+    fun `should report the requests without a blocking fallback as not supported`() {
+        // act
+        val writeFailure = assertThrows(ExecutionException::class.java) {
+            connection.writeDataAsync(0, 0, "S-0-0051", 1).get(1, TimeUnit.SECONDS)
+        }
+        // assert
+        assertThrows(SipServiceNotSupportedException::class.java) { connection.readEverything(0, 0, "S-0-0051") }
+        assertThrows(SipServiceNotSupportedException::class.java) { connection.getDataAttribute(0, 0, "S-0-0051") }
+        assertThrows(SipServiceNotSupportedException::class.java) { connection.writeDataBatch(0, 0, mapOf("S-0-0051" to 1)) }
+        assertTrue(writeFailure.cause is SipServiceNotSupportedException)
+    }
+}
@@ -0,0 +1,51 @@
+package net.tammon.sip
+
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class SipTimerTest {
+
+    // a small wheel, so timeouts wrap around the wheel several times
+    private val timer = SipTimer("sip-timer-test", 1, TimeUnit.MILLISECONDS, 8)
+
+    @AfterEach
+    fun tearDown() = timer.stop()
+
+    @Test
+    fun `should run timeouts in the order of their deadlines`() {
+        // arrange
+        val expired = ConcurrentLinkedQueue<Int>()
+        val latch = CountDownLatch(3)
+        val start = System.nanoTime()
+        // act
+        listOf(30, 5, 18).forEach { delay ->
+            timer.schedule({ expired.add(delay); latch.countDown() }, delay.toLong(), TimeUnit.MILLISECONDS)
+        }
+        latch.await(1, TimeUnit.SECONDS)
+        // assert
+        assertEquals(listOf(5, 18, 30), expired.toList())
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30))
+    }
+
+    @Test
+    fun `should not run cancelled timeouts`() {
+        // arrange
+        val latch = CountDownLatch(1)
+        val cancelled = timer.schedule({ latch.countDown() }, 10, TimeUnit.MILLISECONDS)
+        val expired = timer.schedule({}, 0, TimeUnit.MILLISECONDS)
+        // act
+        val result = cancelled.cancel()
+        // assert
+        assertTrue(result)
+        assertFalse(latch.await(50, TimeUnit.MILLISECONDS))
+        assertTrue(cancelled.isCancelled)
+        assertTrue(expired.isExpired)
+        assertFalse(expired.cancel())
+    }
+}
@@ -0,0 +1,118 @@
+package net.tammon.sip
+
+import net.tammon.sip.exceptions.SipProtocolException
+import net.tammon.sip.exceptions.SipSocketTimeoutException
+import net.tammon.sip.packets.Data
+import net.tammon.sip.simulator.SimulatedDrive
+import net.tammon.sip.simulator.SipSimulator
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class SubscriptionSchedulerTest {
+
+    private val simulator = SipSimulator()
+    private val drive = SimulatedDrive().setParameter("S-0-0051", 0x00220001, byteArrayOf(42, 0, 0, 0))
+    private val connection = TCPConnection(AbstractSipConnection.getDefaultProperties("127.0.0.1", false, 4).apply {
+        setProperty("sipPort", simulator.start(drive).toString())
+    })
+    private val scheduler = SubscriptionScheduler(connection)
+
+    @AfterEach
+    fun tearDown() {
+        scheduler.close()
+        connection.disconnect()
+        simulator.close()
+    }
+
+    private fun counter(count: AtomicInteger) = SubscriptionListener { count.incrementAndGet() }
+
+    @Test
+    fun `should coalesce subscriptions of the same parameter`() {
+        // arrange
+        val fast = AtomicInteger()
+        val slow = AtomicInteger()
+        // act
+        scheduler.subscribe(0, 0, "S-0-0051", 20, TimeUnit.MILLISECONDS, counter(fast))
+        scheduler.subscribe(0, 0, "S-0-0051.0.0", 80, TimeUnit.MILLISECONDS, counter(slow))
+        Thread.sleep(1000)
+        val reads = drive.dataRequestCount
+        // assert
+        assertEquals(1, scheduler.pollCount)
+        assertTrue(reads in 30..60, "reads: $reads")
+        assertTrue(fast.get() >= reads - 2, "fast: ${fast.get()}, reads: $reads")
+        assertTrue(slow.get() in 8..26, "slow: ${slow.get()}")
+    }
+
+    @Test
+    fun `should deliver the data and stop after cancel`() {
+        // arrange
+        val received = CopyOnWriteArrayList<Data>()
+        val latch = CountDownLatch(3)
+        val subscription = scheduler.subscribe(0, 0, "S-0-0051", 10, TimeUnit.MILLISECONDS, SubscriptionListener {
+            received.add(it)
+            latch.countDown()
+        })
+        // act
+        latch.await(5, TimeUnit.SECONDS)
+        subscription.cancel()
+        Thread.sleep(50)
+        val count = received.size
+        Thread.sleep(100)
+        // assert
+        assertEquals(42, received[0].toInt())
+        assertEquals(count, received.size)
+        assertEquals(0, scheduler.pollCount)
+        assertEquals(0, scheduler.subscriptionCount)
+    }
+
+    @Test
+    fun `should report failed reads`() {
+        val errors = CopyOnWriteArrayList<Throwable>()
+        val latch = CountDownLatch(1)
+        scheduler.subscribe(0, 0, "S-0-0100", 10, TimeUnit.MILLISECONDS, object : SubscriptionListener {
+            override fun onData(data: Data) {}
+            override fun onError(cause: Throwable) {
+                errors.add(cause)
+                latch.countDown()
+            }
+        })
+        latch.await(5, TimeUnit.SECONDS)
+        assertTrue(errors[0] is SipProtocolException)
+    }
+
+    @Test
+    fun `should report a read which is not answered within the busy timeout once`() {
+        // arrange
+        val slowDrive = SimulatedDrive().setParameter("S-0-0051", 0x00220001, byteArrayOf(42, 0, 0, 0))
+        val slowConnection = TCPConnection(AbstractSipConnection.getDefaultProperties("127.0.0.1", false, 4).apply {
+            setProperty("sipPort", simulator.start(slowDrive).toString())
+            setProperty("busyTimeout", "200")
+            setProperty("requestTimeout", "400")
+        })
+        // the reads are answered after their request timeout
+        slowDrive.setLatencyNanos(TimeUnit.MILLISECONDS.toNanos(1000))
+        val slowScheduler = SubscriptionScheduler(slowConnection)
+        val errors = CopyOnWriteArrayList<Throwable>()
+        // act
+        slowScheduler.subscribe(0, 0, "S-0-0051", 50, TimeUnit.MILLISECONDS, object : SubscriptionListener {
+            override fun onData(data: Data) {}
+            override fun onError(cause: Throwable) {
+                errors.add(cause)
+            }
+        })
+        Thread.sleep(1000)
+        slowScheduler.close()
+        slowConnection.disconnect()
+        // assert
+        assertTrue(errors.isNotEmpty())
+        errors.forEach {
+            assertTrue(it is SipSocketTimeoutException && it.message!!.endsWith("within the busy timeout"), it.toString())
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package net.tammon.sip
+
+import net.tammon.sip.exceptions.SipCommunicationException
+import net.tammon.sip.exceptions.SipProtocolException
+import net.tammon.sip.exceptions.SipSocketTimeoutException
+import net.tammon.sip.packets.CommonErrorCodes
+import net.tammon.sip.packets.Data
+import net.tammon.sip.packets.DataAttribute
+import net.tammon.sip.packets.Idn
+import net.tammon.sip.simulator.SimulatedDrive
+import net.tammon.sip.simulator.SipSimulator
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.net.InetAddress
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+class TCPConnectionTest {
+
+    private val simulator = SipSimulator()
+    private val drive = SimulatedDrive()
+            .setParameter("S-0-0051", SIGNED_INT, value(123456))
+            .setParameter("P-0-1058.0.35", SIGNED_INT, value(-42))
+
+    @AfterEach
+    fun tearDown() = simulator.close()
+
+    private fun connect(port: Int, maxInFlight: Int = 1, keepAlive: Boolean = false, leaseTimeout: Int = 10000,
+                        requestTimeout: Int = 6000, busyTimeout: Int = 3000): TCPConnection {
+        val properties = AbstractSipConnection.getDefaultProperties("127.0.0.1", keepAlive, maxInFlight)
+        properties.setProperty("sipPort", port.toString())
+        properties.setProperty("busyTimeout", busyTimeout.toString())
+        properties.setProperty("leaseTimeout", leaseTimeout.toString())
+        properties.setProperty("requestTimeout", requestTimeout.toString())
+        return TCPConnection(properties)
+    }
+
+    @Test
+    fun `should read parameters of the simulated drive`() {
+        // arrange
+        val connection = connect(simulator.start(drive))
+        // act
+        val position = connection.readData(0, 0, "S-0-0051")
+        val extended = connection.readData(0, 0, "P-0-1058.0.35")
+        connection.disconnect()
+        // assert
+        assertEquals(123456, position.toInt())
+        assertEquals(-42, extended.toInt())
+    }
+
+    @Test
+    fun `should connect with the shipped default properties`() {
+        // arrange
+        val properties = AbstractSipConnection.getDefaultProperties()
+        properties.setProperty("host", "127.0.0.1")
+        properties.setProperty("sipPort", simulator.start(drive).toString())
+        // act
+        val connection = TCPConnection(properties)
+        val position = connection.readData(0, 0, "S-0-0051")
+        connection.disconnect()
+        // assert
+        assertEquals(123456, position.toInt())
+        assertEquals("1", properties.getProperty("maxInFlight"))
+        assertEquals("100", properties.getProperty("reconnectDelay"))
+    }
+
+    @Test
+    fun `should fail on unknown parameters`() {
+        val connection = connect(simulator.start(drive))
+        assertThrows(SipProtocolException::class.java) { connection.readData(0, 0, "S-0-0100") }
+        connection.disconnect()
+    }
+
+    @Test
+    fun `should fail the future of an invalid read instead of throwing`() {
+        // arrange
+        val connection = connect(simulator.start(drive))
+        // act
+        val missingIdn = connection.readDataAsync(0, 0, null as Idn?)
+        val invalidIdn = connection.readDataAsync(0, 0, "invalid")
+        connection.disconnect()
+        // assert
+        assertTrue(assertThrows(ExecutionException::class.java) { missingIdn.get() }.cause is IllegalArgumentException)
+        assertTrue(assertThrows(ExecutionException::class.java) { invalidIdn.get() }.cause is IllegalArgumentException)
+    }
+
+    @Test
+    fun `should reassemble fragmented responses of pipelined requests`() {
+        // arrange
+        drive.setFragmentSize(3).setLatencyNanos(TimeUnit.MILLISECONDS.toNanos(1))
+        val connection = connect(simulator.start(drive), 8)
+        // act
+        val futures = (1..200).map { connection.readDataAsync(0, 0, if (it % 2 == 0) "S-0-0051" else "P-0-1058.0.35") }
+        val values = futures.map { it.get(10, TimeUnit.SECONDS).toInt() }
+        connection.disconnect()
+        // assert
+        assertEquals((1..200).map { if (it % 2 == 0) 123456 else -42 }, values)
+    }
+
+    @Test
+    fun `should read all elements of a parameter with one request`() {
+        // arrange
+        drive.setDescription("S-0-0051", "Position feedback value 1", "mm", value(-1000), value(1000)).setFragmentSize(5)
+        val connection = connect(simulator.start(drive))
+        // act
+        val response = connection.readEverything(0, 0, "S-0-0051")
+        connection.disconnect()
+        // assert
+        assertEquals("Position feedback value 1", response.name)
+        assertEquals("mm", response.unit)
+        assertEquals(-1000, response.minimum.toInt())
+        assertEquals(1000, response.maximum.toInt())
+        assertEquals(123456, response.data.toInt())
+        assertEquals(1, drive.dataRequestCount)
+    }
+
+    @Test
+    fun `should read the data attribute only once`() {
+        // arrange
+        val connection = connect(simulator.start(drive))
+        // act
+        val first = connection.getDataAttribute(0, 0, "S-0-0051")
+        val second = connection.getDataAttribute(0, 0, "S-0-0051.0.0")
+        connection.disconnect()
+        // assert
+        assertEquals(SIGNED_INT, first.rawDataAttribute)
+        assertSame(first, second)
+        assertEquals(1, drive.dataRequestCount)
+    }
+
+    @Test
+    fun `should write values encoded with the data attribute`() {
+        // arrange
+        val connection = connect(simulator.start(drive))
+        // act
+        connection.writeData(0, 0, "S-0-0051", 654321)
+        val value = connection.readData(0, 0, "S-0-0051").toInt()
+        connection.disconnect()
+        // assert
+        assertEquals(654321, value)
+    }
+
+    @Test
+    fun `should pipeline batched writes`() {
+        // arrange
+        val idns = (1..100).map { "P-0-0%03d".format(it) }
+        idns.forEach { drive.setParameter(it, SIGNED_INT, value(0)) }
+        drive.setLatencyNanos(TimeUnit.MILLISECONDS.toNanos(1))
+        val connection = connect(simulator.start(drive), 16)
+        // act
+        connection.writeDataBatch(0, 0, idns.mapIndexed { index, idn -> idn to index }.toMap())
+        connection.disconnect()
+        // assert
+        assertEquals(idns.indices.toList(), idns.map { ByteBuffer.wrap(drive.getValue(it)).order(ByteOrder.LITTLE_ENDIAN).int })
+        assertThrows(SipProtocolException::class.java) { connect(simulator.start(drive)).writeDataBatch(0, 0, mapOf("S-0-0100" to 1)) }
+    }
+
+    @Test
+    fun `should read batches with failures per parameter`() {
+        // arrange
+        drive.setFragmentSize(7)
+        val connection = connect(simulator.start(drive), 4)
+        val idns = listOf("S-0-0051", "S-0-0100", "P-0-1058.0.35", "invalid") + List(20) { "S-0-0051" }
+        // act
+        val results = connection.readDataBatch(0, 0, idns)
+        connection.disconnect()
+        // assert
+        assertEquals(idns, results.map { it.idn })
+        assertEquals(123456, results[0].data.toInt())
+        assertTrue(results[1].failure is SipProtocolException)
+        assertEquals(-42, results[2].data.toInt())
+        assertTrue(results[3].failure is IllegalArgumentException)
+        assertTrue(results.drop(4).all { it.isSuccess && it.data.toInt() == 123456 })
+    }
+
+    @Test
+    fun `should serve several drives on different ports`() {
+        // arrange
+        val otherDrive = SimulatedDrive().setParameter("S-0-0051", SIGNED_INT, value(7))
+        val connection = connect(simulator.start(drive))
+        val otherConnection = connect(simulator.start(otherDrive))
+        // act
+        val value = connection.readData(0, 0, "S-0-0051").toInt()
+        val otherValue = otherConnection.readData(0, 0, "S-0-0051").toInt()
+        connection.disconnect()
+        otherConnection.disconnect()
+        // assert
+        assertEquals(123456, value)
+        assertEquals(7, otherValue)
+    }
+
+    @Test
+    fun `should only ping idle connections`() {
+        // arrange
+        val connection = connect(simulator.start(drive), keepAlive = true, leaseTimeout = 200)
+        // act
+        repeat(20) {
+            connection.readData(0, 0, "S-0-0051")
+            Thread.sleep(20)
+        }
+        val pingsWhileReading = drive.pingCount
+        Thread.sleep(400)
+        val pingsWhileIdle = drive.pingCount
+        connection.disconnect()
+        // assert
+        assertEquals(0, pingsWhileReading)
+        assertTrue(pingsWhileIdle in 1..4, "pings while idle: " + pingsWhileIdle)
+    }
+
+    @Test
+    fun `should disconnect when the responses cannot be read anymore`() {
+        // arrange
+        val connection = connect(simulator.start(drive), 4)
+        val connected = connection.isConnected
+        // act
+        simulator.close()
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1)
+        while (connection.isConnected && System.nanoTime() < deadline) Thread.sleep(1)
+        // assert
+        assertTrue(connected)
+        assertFalse(connection.isConnected)
+        val exception = assertThrows(ExecutionException::class.java) { connection.readDataAsync(0, 0, "S-0-0051").get() }
+        assertTrue(exception.cause is SipCommunicationException)
+    }
+
+    @Test
+    fun `should not block the timer with a keep alive which cannot be written`() {
+        // arrange
+        val connection = connect(simulator.start(drive), maxInFlight = 128, keepAlive = true, leaseTimeout = 200)
+        drive.setStalled(true)
+        val chunk = Data(ByteArray(1 shl 16), DataAttribute(0x00040000))
+        // the writes fill the socket buffers until the writing thread blocks
+        val writer = Thread { repeat(128) { connection.writeDataAsync(0, 0, "S-0-0051", chunk) } }
+        writer.isDaemon = true
+        writer.start()
+        // the keep alive is due after 140ms without a response
+        Thread.sleep(300)
+        val timerTask = CountDownLatch(1)
+        // act
+        SipTimer.getDefault().schedule({ timerTask.countDown() }, 1, TimeUnit.MILLISECONDS)
+        val timerResponsive = timerTask.await(1, TimeUnit.SECONDS)
+        connection.disconnect()
+        drive.setStalled(false)
+        // assert
+        assertTrue(timerResponsive)
+    }
+
+    @Test
+    fun `should fail requests which are not answered in time`() {
+        // arrange
+        val connection = connect(simulator.start(drive), 2, requestTimeout = 100)
+        drive.setLatencyNanos(TimeUnit.MILLISECONDS.toNanos(300))
+        // act & assert
+        assertThrows(SipSocketTimeoutException::class.java) { connection.readData(0, 0, "S-0-0051") }
+        drive.setLatencyNanos(0)
+        // the expired request has freed its slot of the in-flight window
+        assertEquals(123456, connection.readData(0, 0, "S-0-0051").toInt())
+        connection.disconnect()
+    }
+
+    @Test
+    fun `should close a connection without pipeline when a request is not answered in time`() {
+        // arrange
+        val connection = connect(simulator.start(drive), requestTimeout = 100)
+        drive.setLatencyNanos(TimeUnit.MILLISECONDS.toNanos(300))
+        // act
+        assertThrows(SipSocketTimeoutException::class.java) { connection.readData(0, 0, "S-0-0051") }
+        // assert
+        assertFalse(connection.isConnected)
+        assertThrows(SipCommunicationException::class.java) { connection.readData(0, 0, "S-0-0051") }
+    }
+
+    @Test
+    fun `should exchange requests without pipeline threads if only one may be in flight`() {
+        // arrange
+        val threads = Thread.getAllStackTraces().keys
+        // act
+        val connection = connect(simulator.start(drive))
+        val value = connection.readDataAsync(0, 0, "S-0-0051").get(1, TimeUnit.SECONDS).toInt()
+        val newThreads = Thread.getAllStackTraces().keys - threads
+        connection.disconnect()
+        // assert
+        assertEquals(123456, value)
+        assertTrue(newThreads.none { it.name.startsWith("sip-reader-") || it.name.startsWith("sip-writer-") },
+                newThreads.toString())
+    }
+
+    @Test
+    fun `should retry requests answered busy`() {
+        // arrange
+        drive.setBusyEvery(3)
+        val connection = connect(simulator.start(drive), 4)
+        // act
+        val results = connection.readDataBatch(0, 0, List(30) { "S-0-0051" })
+        connection.disconnect()
+        // assert
+        assertTrue(results.all { it.isSuccess && it.data.toInt() == 123456 })
+        assertTrue(drive.dataRequestCount > 30)
+    }
+
+    @Test
+    fun `should fail requests while the drive stays busy`() {
+        // arrange
+        drive.setBusyEvery(1)
+        val connection = connect(simulator.start(drive), busyTimeout = 100)
+        // act & assert
+        assertThrows(SipSocketTimeoutException::class.java) { connection.readData(0, 0, "S-0-0051") }
+        assertTrue(drive.dataRequestCount > 1)
+        connection.disconnect()
+    }
+
+    @Test
+    fun `should report requests and responses to the metrics`() {
+        // arrange
+        drive.setBusyEvery(3)
+        val metrics = RecordingMetrics()
+        val connection = connect(simulator.start(drive), 4, requestTimeout = 500)
+        connection.metrics = metrics
+        // act
+        connection.readDataBatch(0, 0, List(10) { "S-0-0051" })
+        assertThrows(SipProtocolException::class.java) { connection.readData(0, 0, "S-0-0100") }
+        drive.setLatencyNanos(TimeUnit.MILLISECONDS.toNanos(1000))
+        assertThrows(SipSocketTimeoutException::class.java) { connection.readData(0, 0, "S-0-0051") }
+        connection.disconnect()
+        // the timer thread records the timeout after it has failed the request
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1)
+        while (metrics.timeouts.get() == 0 && System.nanoTime() < deadline) Thread.sleep(1)
+        // assert
+        assertEquals(11, metrics.responses.get())
+        assertEquals(1, metrics.exceptionResponses.get())
+        assertEquals(1, metrics.timeouts.get())
+        assertTrue(metrics.busyResponses.get() > 0)
+        assertEquals(12 + metrics.busyResponses.get(), metrics.requests.get())
+        assertTrue(metrics.roundTripNanos.get() > 0)
+        assertTrue(metrics.bytesWritten.get() > 0 && metrics.bytesRead.get() > 0)
+    }
+
+    private class RecordingMetrics : SipMetrics {
+        val requests = AtomicInteger()
+        val responses = AtomicInteger()
+        val busyResponses = AtomicInteger()
+        val exceptionResponses = AtomicInteger()
+        val timeouts = AtomicInteger()
+        val roundTripNanos = AtomicLong()
+        val bytesWritten = AtomicLong()
+        val bytesRead = AtomicLong()
+
+        override fun requestSent(drive: InetAddress, messageType: Int, inFlight: Int) {
+            requests.incrementAndGet()
+        }
+
+        override fun responseReceived(drive: InetAddress, messageType: Int, roundTripNanos: Long) {
+            responses.incrementAndGet()
+            this.roundTripNanos.addAndGet(roundTripNanos)
+        }
+
+        override fun busyResponse(drive: InetAddress, messageType: Int) {
+            busyResponses.incrementAndGet()
+        }
+
+        override fun exceptionResponse(drive: InetAddress, messageType: Int, commonErrorCode: CommonErrorCodes,
+                                       specificErrorCode: Int) {
+            exceptionResponses.incrementAndGet()
+        }
+
+        override fun requestTimedOut(drive: InetAddress, messageType: Int) {
+            timeouts.incrementAndGet()
+        }
+
+        override fun bytesWritten(drive: InetAddress, bytes: Int) {
+            bytesWritten.addAndGet(bytes.toLong())
+        }
+
+        override fun bytesRead(drive: InetAddress, bytes: Int) {
+            bytesRead.addAndGet(bytes.toLong())
+        }
+    }
+
+    companion object {
+        // four byte signed decimal without decimal places
+        private const val SIGNED_INT = 0x00220001
+
+        private fun value(value: Int): ByteArray =
+                ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array()
+    }
+}
@@ -1,7 +1,12 @@
 package net.tammon.sip.packets
 
+import net.tammon.sip.exceptions.IllegalTypeConversionException
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
 import org.junit.jupiter.api.Test
+import java.math.BigDecimal
+import java.util.Random
 
 class DataTest {
 
@@ -14,4 +19,108 @@ class DataTest {
         // Assert
         assertEquals(expected, actual)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `should scale fixed point numbers like parsing their decimal string`() {
+        // arrange
+        val random = Random(42)
+        val numbers = (-70000..70000).toList() + List(100000) { random.nextInt() }
+        for (decimalPointPosition in 0..15) {
+            for (number in numbers) {
+                val decimal = BigDecimal.valueOf(number.toLong(), decimalPointPosition).toString()
+                // act & assert
+                assertEquals(java.lang.Float.parseFloat(decimal), Data.scaleToFloat(number, decimalPointPosition))
+                assertEquals(java.lang.Double.parseDouble(decimal), Data.scaleToDouble(number.toLong(), decimalPointPosition))
+            }
+        }
+    }
+
+    @Test
+    fun `should scale long fixed point numbers like parsing their decimal string`() {
+        val random = Random(42)
+        val numbers = listOf(Long.MIN_VALUE, Long.MAX_VALUE, (1L shl 53) + 1, -(1L shl 53) - 1) + List(100000) { random.nextLong() }
+        for (decimalPointPosition in 0..15)
+            for (number in numbers)
+                assertEquals(java.lang.Double.parseDouble(BigDecimal.valueOf(number, decimalPointPosition).toString()),
+                        Data.scaleToDouble(number, decimalPointPosition))
+    }
+
+    @Test
+    fun `should convert decimal lists to floats and exact decimals`() {
+        // arrange: list of two byte signed decimals with two decimal places
+        val data = Data(byteArrayOf(0x39, 0x30, 0xF6.toByte(), 0xFF.toByte(), 0, 0), DataAttribute(0x02250001))
+        // act
+        val floats = data.asFloatArray()
+        val decimals = data.asBigDecimalArray()
+        // assert
+        assertArrayEquals(floatArrayOf(123.45f, -0.1f, 0f), floats)
+        assertArrayEquals(arrayOf(BigDecimal("123.45"), BigDecimal("-0.10"), BigDecimal("0.00")), decimals)
+    }
+
+    @Test
+    fun `should convert unsigned decimals to exact decimals`() {
+        // four byte unsigned decimal with four decimal places
+        val data = Data(byteArrayOf(0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte()), DataAttribute(0x04120001))
+        assertEquals(BigDecimal("429496.7295"), data.asBigDecimal())
+        assertEquals(429496.7295, data.asDouble())
+    }
+
+    @Test
+    fun `should decode signed and unsigned lists`() {
+        // arrange
+        val raw = byteArrayOf(0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 1, 0, 0, 0)
+        // act
+        val unsignedBytes = Data(raw, DataAttribute(0x00140001)).asShortArray()
+        val unsignedShorts = Data(raw, DataAttribute(0x00150001)).asIntArray()
+        val signedShorts = Data(raw, DataAttribute(0x00250001)).asLongArray()
+        val unsignedInts = Data(raw, DataAttribute(0x00160001)).asLongArray()
+        val signedInts = Data(raw, DataAttribute(0x00260001)).asIntArray()
+        val signedLongs = Data(raw, DataAttribute(0x00270001)).asLongArray()
+        // assert
+        assertArrayEquals(shortArrayOf(255, 255, 255, 255, 1, 0, 0, 0), unsignedBytes)
+        assertArrayEquals(intArrayOf(65535, 65535, 1, 0), unsignedShorts)
+        assertArrayEquals(longArrayOf(-1, -1, 1, 0), signedShorts)
+        assertArrayEquals(longArrayOf(4294967295, 1), unsignedInts)
+        assertArrayEquals(intArrayOf(-1, 1), signedInts)
+        assertArrayEquals(longArrayOf(0x1FFFFFFFF), signedLongs)
+    }
+
+    @Test
+    fun `should decode lists into caller owned arrays`() {
+        // arrange: list of four byte signed decimals with three decimal places
+        val data = Data(byteArrayOf(0x39, 0x30, 0, 0, 0xF6.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte()), DataAttribute(0x03260001))
+        val destination = DoubleArray(4)
+        // act
+        val count = data.decodeInto(destination, 1)
+        // assert
+        assertEquals(2, count)
+        assertArrayEquals(doubleArrayOf(0.0, 12.345, -0.01, 0.0), destination)
+        assertArrayEquals(data.asDoubleArray(), destination.copyOfRange(1, 3))
+        assertThrows(IndexOutOfBoundsException::class.java) { data.decodeInto(destination, 3) }
+    }
+
+    @Test
+    fun `should encode numbers with the decimal places of the data attribute`() {
+        // arrange: two byte signed decimal with two decimal places and its list
+        val scalar = DataAttribute(0x02210001)
+        val list = DataAttribute(0x02250001)
+        // act
+        val encoded = Data.encode(123.45, scalar)
+        val encodedList = Data.encode(doubleArrayOf(123.45, -0.1, 0.0), list)
+        // assert
+        assertArrayEquals(byteArrayOf(0x39, 0x30), encoded.rawData)
+        assertEquals(BigDecimal("123.45"), encoded.asBigDecimal())
+        assertArrayEquals(byteArrayOf(0x39, 0x30, 0xF6.toByte(), 0xFF.toByte(), 0, 0), encodedList.rawData)
+    }
+
+    @Test
+    fun `should reject values which do not fit into the parameter`() {
+        val signedByte = DataAttribute(0x00200001)
+        val unsignedShortWithOneDecimal = DataAttribute(0x01110001)
+        assertEquals(-128, Data.encode(-128, signedByte).toInt())
+        assertThrows(IllegalTypeConversionException::class.java) { Data.encode(128, signedByte) }
+        assertThrows(IllegalTypeConversionException::class.java) { Data.encode(-0.1, unsignedShortWithOneDecimal) }
+        assertThrows(IllegalTypeConversionException::class.java) { Data.encode(0.05, unsignedShortWithOneDecimal) }
+        assertThrows(IllegalTypeConversionException::class.java) { Data.encode("text", signedByte) }
+    }
+}
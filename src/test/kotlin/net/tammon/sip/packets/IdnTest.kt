@@ -1,6 +1,9 @@
 package net.tammon.sip.packets
 
 import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
 import org.junit.jupiter.api.Test
 
 class IdnTest {
@@ -31,4 +34,47 @@ class IdnTest {
         // assert
         assertArrayEquals(expected, actual)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `should share parsed idns`() {
+        // act
+        val idn = Idn.of("P-0-1058.0.35")
+        // assert
+        assertSame(idn, Idn.of("P-0-1058.0.35"))
+        assertEquals(0x00238422, idn.eIdn)
+        assertEquals(Idn.of("S-0-0051"), Idn.of("S-0-0051.0.0"))
+    }
+
+    @Test
+    fun `should reject invalid idns`() {
+        listOf("", "S-0-051", "X-0-0051", "S-0-00a1", "S-0-0051.", "S-0-0051.1", "S-0-0051.01.1", "S-0-0051.256.0",
+                "S-0-0051.1.1.1", "S-0-0051.1.-1", "S-8-0001", "S-0-9999", "P-0-4096.0.0").forEach {
+            assertThrows(IllegalArgumentException::class.java, { Idn.of(it) }, it)
+        }
+    }
+
+    @Test
+    fun `should format idns as they are parsed`() {
+        // arrange
+        val idns = listOf("S-0-0000.0.0", "S-0-0051.0.0", "P-0-1058.0.35", "S-7-4095.255.128", "P-3-0017.12.1")
+        val buffer = CharArray(Idn.MAX_LENGTH + 1)
+        idns.forEach {
+            // act
+            val length = Idn.format(Idn.parse(it), buffer, 1)
+            // assert
+            assertEquals(it, Idn.format(Idn.parse(it)))
+            assertEquals(it, String(buffer, 1, length))
+            assertEquals(it, Idn.getIdnAsString(Idn.getIdnAsByteArray(it)))
+        }
+    }
+
+    @Test
+    fun `should decode idn lists`() {
+        // arrange: list of idns
+        val raw = Idn.getIdnAsByteArray("S-0-0017") + Idn.getIdnAsByteArray("P-0-1058.0.35")
+        // act
+        val idns = Data(raw, DataAttribute(0x00560001)).asStringArray()
+        // assert
+        assertArrayEquals(arrayOf("S-0-0017.0.0", "P-0-1058.0.35"), idns)
+    }
+}
@@ -0,0 +1,84 @@
+package net.tammon.sip.packets
+
+import net.tammon.sip.exceptions.SipProtocolException
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class PacketLengthTest {
+
+    private fun buffer(vararg bytes: Int): ByteBuffer =
+            ByteBuffer.wrap(ByteArray(bytes.size) { bytes[it].toByte() }).order(ByteOrder.LITTLE_ENDIAN)
+
+    @Test
+    fun `should require the head before the message type is known`() {
+        assertEquals(8, PacketLength.getRequiredLength(buffer(1, 0, 0)))
+    }
+
+    @Test
+    fun `should return the head length for pong`() {
+        assertEquals(8, PacketLength.getRequiredLength(buffer(1, 0, 0, 0, 66, 0, 0, 0)))
+    }
+
+    @Test
+    fun `should return the head length for busy`() {
+        assertEquals(8, PacketLength.getRequiredLength(buffer(1, 0, 0, 0, 68, 0, 0, 0)))
+    }
+
+    @Test
+    fun `should read the data length of read only data responses`() {
+        // act
+        val head = PacketLength.getRequiredLength(buffer(1, 0, 0, 0, 72, 0, 0, 0))
+        val complete = PacketLength.getRequiredLength(buffer(1, 0, 0, 0, 72, 0, 0, 0, 0, 0, 0x21, 0x10, 0x2C, 0x1, 0, 0))
+        // assert
+        assertEquals(16, head)
+        assertEquals(316, complete)
+    }
+
+    @Test
+    fun `should read the number of supported messages of connect responses`() {
+        val actual = PacketLength.getRequiredLength(buffer(
+                0, 0, 0, 0, 64, 0, 0, 0, 1, 0, 0, 0, 0xB8, 0xB, 0, 0, 0x10, 0x27, 0, 0, 3, 0, 0, 0))
+        assertEquals(36, actual)
+    }
+
+    @Test
+    fun `should walk the length fields of read everything responses`() {
+        // arrange
+        val name = listOf(1, 0, 0, 0, 74, 0, 0, 0, 0, 0, 3, 0, 0x41, 0x42, 0x43)
+        val unit = name + listOf(1, 0, 0x22, 0, 2, 0, 0x6D, 0x6D)
+        val limits = unit + listOf(0, 0, 0, 0, 0, 0, 0, 0)
+        // act
+        val beforeUnit = PacketLength.getRequiredLength(buffer(*name.toIntArray()))
+        val beforeLimits = PacketLength.getRequiredLength(buffer(*unit.toIntArray()))
+        val complete = PacketLength.getRequiredLength(buffer(*(limits + listOf(4, 0, 0, 0)).toIntArray()))
+        // assert
+        assertEquals(21, beforeUnit)
+        assertEquals(25, beforeLimits)
+        assertEquals(39, complete)
+    }
+
+    @Test
+    fun `should reject negative data lengths`() {
+        assertThrows(SipProtocolException::class.java) {
+            PacketLength.getRequiredLength(buffer(1, 0, 0, 0, 72, 0, 0, 0, 0, 0, 0x21, 0x10, 0xFC, 0xFF, 0xFF, 0xFF))
+        }
+    }
+
+    @Test
+    fun `should reject packets larger than the maximum length`() {
+        // arrange
+        val connectResponse = buffer(0, 0, 0, 0, 64, 0, 0, 0, 1, 0, 0, 0, 0xB8, 0xB, 0, 0, 0x10, 0x27, 0, 0, 0, 0, 0x10, 0)
+        val readOnlyDataResponse = buffer(1, 0, 0, 0, 72, 0, 0, 0, 0, 0, 0x21, 0x10, 0, 0, 0x10, 0)
+        // act & assert
+        assertThrows(SipProtocolException::class.java) { PacketLength.getRequiredLength(connectResponse) }
+        assertThrows(SipProtocolException::class.java) { PacketLength.getRequiredLength(readOnlyDataResponse) }
+    }
+
+    @Test
+    fun `should reject unknown message types`() {
+        assertThrows(SipProtocolException::class.java) { PacketLength.getRequiredLength(buffer(1, 0, 0, 0, 99, 0, 0, 0)) }
+    }
+}
@@ -0,0 +1,36 @@
+package net.tammon.sip.packets
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class ReadOnlyDataResponseTest {
+
+    private val packet = intArrayOf(7, 0, 0, 0, 72, 0, 0, 0, 1, 0, 0x21, 0, 2, 0, 0, 0, 0x2C, 0x1)
+
+    @Test
+    fun `should decode the packet from the position of the buffer`() {
+        // arrange
+        val buffer = ByteBuffer.allocate(packet.size + 3).order(ByteOrder.LITTLE_ENDIAN)
+        (buffer as Buffer).position(3)
+        packet.forEach { buffer.put(it.toByte()) }
+        (buffer as Buffer).position(3)
+        val response = ReadOnlyDataResponse()
+        // act
+        response.setData(buffer)
+        // assert
+        assertEquals(7, response.transactionId)
+        assertEquals(300, response.data.toShort())
+        assertEquals(3, buffer.position())
+    }
+
+    @Test
+    fun `should decode byte arrays like buffers`() {
+        val response = ReadOnlyDataResponse()
+        response.setData(ByteArray(packet.size) { packet[it].toByte() })
+        assertArrayEquals(byteArrayOf(0x2C, 0x1), response.data.rawData)
+    }
+}